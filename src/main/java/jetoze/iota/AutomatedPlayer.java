@@ -0,0 +1,18 @@
+package jetoze.iota;
+
+/**
+ * A strategy that decides the actions of a player without human input.
+ * 
+ * @see MatchRunner
+ */
+@FunctionalInterface
+public interface AutomatedPlayer {
+
+	/**
+	 * Decides the action of the player in turn. The action must be a 
+	 * {@link PlayLineAction} or a {@link PassAction}. The game must not be
+	 * modified.
+	 */
+	public GameAction nextAction(GameState game);
+	
+}
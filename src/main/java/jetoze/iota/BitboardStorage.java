@@ -0,0 +1,195 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Grid storage that keeps occupancy bitboards next to the cards of another
+ * storage. The bitboards cover a window of 64 x 64 positions around origo,
+ * with one long per row and one long per column, so that neighbor and run 
+ * length queries are shifts and masks rather than walks over the cards.
+ * <p>
+ * A game places at most 66 cards on the board, so in practice all cards fall
+ * inside the window. Queries that reach outside the window fall back to the
+ * underlying storage.
+ */
+final class BitboardStorage implements GridStorage {
+
+	private static final int WINDOW_SIZE = Long.SIZE;
+
+	/**
+	 * The offset from a row or column to its index in the window.
+	 */
+	private static final int OFFSET = WINDOW_SIZE / 2;
+
+	private final GridStorage cards;
+
+	/**
+	 * For each row in the window, bit {@code col + OFFSET} is set if the
+	 * position is occupied.
+	 */
+	private final long[] rows;
+
+	/**
+	 * For each column in the window, bit {@code row + OFFSET} is set if the
+	 * position is occupied.
+	 */
+	private final long[] cols;
+
+	/**
+	 * Whether the bitboards have been built. Unless they are built right away,
+	 * they are built by the first query that uses them. Until then, cards that
+	 * are put and removed only go to the underlying storage.
+	 */
+	private boolean tracking;
+
+	/**
+	 * Creates a storage that keeps bitboards for the cards in the given storage.
+	 * 
+	 * @param track
+	 *            whether the bitboards should be built right away. Otherwise
+	 *            they are built by the first {@link #contains(int, int)},
+	 *            {@link #hasNeighbor(int, int)} or
+	 *            {@link #distanceToEnd(int, int, int, int)} query.
+	 */
+	public BitboardStorage(GridStorage cards, boolean track) {
+		this(checkNotNull(cards), new long[WINDOW_SIZE], new long[WINDOW_SIZE], false);
+		if (track) {
+			startTracking();
+		}
+	}
+
+	private BitboardStorage(GridStorage cards, long[] rows, long[] cols, boolean tracking) {
+		this.cards = cards;
+		this.rows = rows;
+		this.cols = cols;
+		this.tracking = tracking;
+	}
+
+	/**
+	 * Builds the bitboards, if they are not already built.
+	 */
+	private void startTracking() {
+		if (!tracking) {
+			tracking = true;
+			cards.forEach((row, col, card) -> set(row, col));
+		}
+	}
+
+	private static boolean inWindow(int row, int col) {
+		return row >= -OFFSET && row < OFFSET && col >= -OFFSET && col < OFFSET;
+	}
+
+	private void set(int row, int col) {
+		if (inWindow(row, col)) {
+			rows[row + OFFSET] |= 1L << (col + OFFSET);
+			cols[col + OFFSET] |= 1L << (row + OFFSET);
+		}
+	}
+
+	private void clear(int row, int col) {
+		if (inWindow(row, col)) {
+			rows[row + OFFSET] &= ~(1L << (col + OFFSET));
+			cols[col + OFFSET] &= ~(1L << (row + OFFSET));
+		}
+	}
+
+	@Override
+	@Nullable
+	public Card get(int row, int col) {
+		return cards.get(row, col);
+	}
+
+	@Override
+	public boolean contains(int row, int col) {
+		startTracking();
+		if (inWindow(row, col)) {
+			return (rows[row + OFFSET] & (1L << (col + OFFSET))) != 0L;
+		}
+		return cards.contains(row, col);
+	}
+
+	@Override
+	public boolean hasNeighbor(int row, int col) {
+		startTracking();
+		int r = row + OFFSET;
+		int c = col + OFFSET;
+		if (r < 1 || r >= WINDOW_SIZE - 1 || c < 1 || c >= WINDOW_SIZE - 1) {
+			return GridStorage.super.hasNeighbor(row, col);
+		}
+		// The left and right neighbors are bits c - 1 and c + 1 of the row,
+		// the neighbors above and below are bits r - 1 and r + 1 of the column.
+		return ((rows[r] >>> (c - 1)) & 0b101L) != 0L || ((cols[c] >>> (r - 1)) & 0b101L) != 0L;
+	}
+
+	@Override
+	public int distanceToEnd(int row, int col, int dRow, int dCol) {
+		startTracking();
+		if (!inWindow(row, col)) {
+			return GridStorage.super.distanceToEnd(row, col, dRow, dCol);
+		}
+		long word;
+		int bit;
+		if (dRow == 0) {
+			word = rows[row + OFFSET];
+			bit = col + OFFSET;
+		} else {
+			word = cols[col + OFFSET];
+			bit = row + OFFSET;
+		}
+		int distance;
+		boolean reachesEdge;
+		if (dRow + dCol > 0) {
+			// Count the consecutive ones above the bit. Shifting in zeros from the
+			// top ensures the count stops at the edge of the window.
+			distance = (bit == WINDOW_SIZE - 1)
+					? 0
+					: Long.numberOfTrailingZeros(~(word >>> (bit + 1)));
+			reachesEdge = (bit + distance == WINDOW_SIZE - 1);
+		} else {
+			// Count the consecutive ones below the bit.
+			distance = (bit == 0)
+					? 0
+					: Long.numberOfLeadingZeros(~(word << (WINDOW_SIZE - bit)));
+			reachesEdge = (bit - distance == 0);
+		}
+		if (reachesEdge && distance < Constants.MAX_LINE_LENGTH) {
+			// The run may continue outside of the window.
+			return GridStorage.super.distanceToEnd(row, col, dRow, dCol);
+		}
+		return Math.min(distance, Constants.MAX_LINE_LENGTH);
+	}
+
+	@Override
+	public int size() {
+		return cards.size();
+	}
+
+	@Override
+	public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		cards.forEach(visitor);
+	}
+
+	@Override
+	public void put(int row, int col, Card card) {
+		cards.put(row, col, card);
+		if (tracking) {
+			set(row, col);
+		}
+	}
+
+	@Override
+	public void remove(int row, int col) {
+		cards.remove(row, col);
+		if (tracking) {
+			clear(row, col);
+		}
+	}
+
+	@Override
+	public BitboardStorage copy() {
+		return new BitboardStorage(cards.copy(), rows.clone(), cols.clone(), tracking);
+	}
+
+}
@@ -0,0 +1,74 @@
+package jetoze.iota;
+
+import javax.annotation.Nullable;
+
+/**
+ * Read-only view of the cards on a board.
+ */
+interface Board {
+
+	/**
+	 * Returns the card at the given position, or {@code null} if the position
+	 * is empty.
+	 */
+	@Nullable
+	Card get(int row, int col);
+
+	default boolean contains(int row, int col) {
+		return get(row, col) != null;
+	}
+
+	/**
+	 * Checks if at least one of the four neighbors of the given position is
+	 * occupied.
+	 */
+	default boolean hasNeighbor(int row, int col) {
+		return contains(row - 1, col) || 
+				contains(row + 1, col) || 
+				contains(row, col - 1) || 
+				contains(row, col + 1);
+	}
+
+	/**
+	 * Returns the number of consecutive occupied positions on the board,
+	 * starting with the neighbor of the given position in the direction given
+	 * by the row and column steps. The count stops at {@code MAX_LINE_LENGTH}, 
+	 * since any line longer than that is invalid anyway.
+	 */
+	default int distanceToEnd(int row, int col, int dRow, int dCol) {
+		int distance = 0;
+		int r = row + dRow;
+		int c = col + dCol;
+		while (distance < Constants.MAX_LINE_LENGTH && contains(r, c)) {
+			++distance;
+			r += dRow;
+			c += dCol;
+		}
+		return distance;
+	}
+
+	int size();
+
+	default boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the bits of the {@link CardSet} of cards that the wildcard in the
+	 * given position can represent in its line of the given orientation, or 0 if
+	 * that line is not valid. A wildcard that is alone in the line can represent
+	 * any card.
+	 */
+	default long wildcardCandidates(int row, int col, Orientation orientation) {
+		long line = Line.scan(this, CardCode.WILDCARD, row, col, orientation);
+		return Line.isValid(line)
+				? Line.candidates(line)
+				: 0L;
+	}
+
+	/**
+	 * Visits all cards on the board, in no particular order.
+	 */
+	void forEach(CoordinateMap.EntryVisitor<? super Card> visitor);
+
+}
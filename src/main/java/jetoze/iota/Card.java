@@ -5,22 +5,47 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Objects;
 import java.util.Set;
 
 import javax.annotation.Nullable;
 
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import jetoze.iota.Constants.Color;
 import jetoze.iota.Constants.Shape;
 
 public abstract class Card {
+	
+	/**
+	 * The canonical concrete cards, indexed by code.
+	 */
+	private static final ImmutableList<Card> CONCRETE_CARDS = createConcreteCards();
+	
+	private static ImmutableList<Card> createConcreteCards() {
+		Card[] cards = new Card[CardCode.NUMBER_OF_CONCRETE_CODES];
+		for (Color c : Color.values()) {
+			for (Shape s : Shape.values()) {
+				for (int fv = Constants.MIN_FACE_VALUE; fv <= Constants.MAX_FACE_VALUE; ++fv) {
+					ConcreteCard card = new ConcreteCard(c, s, fv);
+					cards[card.code()] = card;
+				}
+			}
+		}
+		return ImmutableList.copyOf(cards);
+	}
 
 	public abstract int getFaceValue();
 
 	public abstract boolean isWildcard();
 	
+	/**
+	 * Returns the canonical int code of this card.
+	 * 
+	 * @see CardCode
+	 */
+	public abstract int code();
+	
 	public abstract Set<Object> getMatchProperties();
 
 	public abstract Set<Object> match(Set<Object> properties);
@@ -29,8 +54,37 @@ public abstract class Card {
 		return new Wildcard();
 	}
 	
+	/**
+	 * Returns the canonical instance of the concrete card with the given
+	 * properties. Since there is only ever one instance of each concrete card,
+	 * concrete cards can be compared by identity.
+	 */
 	public static Card newCard(Color color, Shape shape, int faceValue) {
-		return new ConcreteCard(color, shape, faceValue);
+		checkNotNull(color);
+		checkNotNull(shape);
+		checkArgument(faceValue >= Constants.MIN_FACE_VALUE && faceValue <= Constants.MAX_FACE_VALUE);
+		return CONCRETE_CARDS.get(CardCode.encode(color, shape, faceValue));
+	}
+	
+	/**
+	 * Returns the canonical instances of all concrete cards, in the order of
+	 * their codes.
+	 */
+	public static ImmutableList<Card> allConcreteCards() {
+		return CONCRETE_CARDS;
+	}
+	
+	/**
+	 * Returns a card with the given code. A new wildcard instance is returned
+	 * for {@link CardCode#WILDCARD}.
+	 * 
+	 * @see CardCode
+	 */
+	public static Card fromCode(int code) {
+		checkArgument(CardCode.isValid(code), "Invalid card code: %s", code);
+		return CardCode.isWildcard(code)
+				? wildcard()
+				: CONCRETE_CARDS.get(code);
 	}
 	
 	public static Set<Card> createPossibleCards(Set<Object> properties) {
@@ -65,12 +119,18 @@ public abstract class Card {
 		private final Shape shape;
 
 		private final int faceValue;
+		
+		private final int code;
+		
+		private final ImmutableSet<Object> matchProperties;
 
-		public ConcreteCard(Color color, Shape shape, int faceValue) {
+		private ConcreteCard(Color color, Shape shape, int faceValue) {
 			this.color = checkNotNull(color);
 			this.shape = checkNotNull(shape);
 			checkArgument(faceValue >= Constants.MIN_FACE_VALUE && faceValue <= Constants.MAX_FACE_VALUE);
 			this.faceValue = faceValue;
+			this.code = CardCode.encode(color, shape, faceValue);
+			this.matchProperties = ImmutableSet.of(color, shape, faceValue);
 		}
 
 		@Override
@@ -90,10 +150,15 @@ public abstract class Card {
 		public boolean isWildcard() {
 			return false;
 		}
+		
+		@Override
+		public int code() {
+			return code;
+		}
 
 		@Override
 		public Set<Object> getMatchProperties() {
-			return Sets.newHashSet(color, shape, faceValue);
+			return matchProperties;
 		}
 
 		@Override
@@ -110,14 +175,14 @@ public abstract class Card {
 			}
 			if (o instanceof ConcreteCard) {
 				ConcreteCard that = (ConcreteCard) o;
-				return this.color == that.color && this.shape == that.shape && this.faceValue == that.faceValue;
+				return this.code == that.code;
 			}
 			return false;
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hash(color, shape, faceValue);
+			return code;
 		}
 
 		@Override
@@ -138,6 +203,11 @@ public abstract class Card {
 		public boolean isWildcard() {
 			return true;
 		}
+		
+		@Override
+		public int code() {
+			return CardCode.WILDCARD;
+		}
 
 		@Override
 		public Set<Object> getMatchProperties() {
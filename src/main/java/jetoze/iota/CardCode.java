@@ -0,0 +1,111 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import jetoze.iota.Constants.Color;
+import jetoze.iota.Constants.Shape;
+
+/**
+ * Static helpers for the canonical int encoding of a card.
+ * <p>
+ * A concrete card is encoded as {@code color | shape << 2 | (faceValue - 1) << 4},
+ * using the ordinals of the color and shape. This gives each of the 64 concrete
+ * cards a unique code in the range [0, 63]. Wildcards have the {@link #WILDCARD_FLAG}
+ * bit set, and no other bits, i.e. all wildcards share the code {@link #WILDCARD}.
+ */
+public final class CardCode {
+
+	private static final int COLOR_SHIFT = 0;
+
+	private static final int SHAPE_SHIFT = 2;
+
+	private static final int FACE_VALUE_SHIFT = 4;
+
+	private static final int FIELD_MASK = 0x3;
+
+	public static final int WILDCARD_FLAG = 1 << 6;
+
+	/**
+	 * The code of a wildcard.
+	 */
+	public static final int WILDCARD = WILDCARD_FLAG;
+
+	/**
+	 * The number of distinct concrete card codes.
+	 */
+	public static final int NUMBER_OF_CONCRETE_CODES = 64;
+
+	/**
+	 * The number of bits in a property mask: four colors, four shapes and four
+	 * face values.
+	 */
+	public static final int NUMBER_OF_PROPERTIES = 12;
+	
+	/**
+	 * A property mask with all properties set.
+	 */
+	public static final int ALL_PROPERTIES = (1 << NUMBER_OF_PROPERTIES) - 1;
+
+	private static final int SHAPE_PROPERTY_OFFSET = 4;
+	
+	private static final int FACE_VALUE_PROPERTY_OFFSET = 8;
+
+	private static final Color[] COLORS = Color.values();
+
+	private static final Shape[] SHAPES = Shape.values();
+
+	public static int encode(Color color, Shape shape, int faceValue) {
+		return (color.ordinal() << COLOR_SHIFT) |
+				(shape.ordinal() << SHAPE_SHIFT) |
+				((faceValue - Constants.MIN_FACE_VALUE) << FACE_VALUE_SHIFT);
+	}
+
+	public static boolean isValid(int code) {
+		return code == WILDCARD || (code >= 0 && code < NUMBER_OF_CONCRETE_CODES);
+	}
+
+	public static boolean isWildcard(int code) {
+		return (code & WILDCARD_FLAG) != 0;
+	}
+
+	public static Color color(int code) {
+		checkConcrete(code);
+		return COLORS[(code >>> COLOR_SHIFT) & FIELD_MASK];
+	}
+
+	public static Shape shape(int code) {
+		checkConcrete(code);
+		return SHAPES[(code >>> SHAPE_SHIFT) & FIELD_MASK];
+	}
+
+	/**
+	 * Returns the face value of the card with the given code. Wildcards have
+	 * face value 0.
+	 */
+	public static int faceValue(int code) {
+		return isWildcard(code)
+				? 0
+				: ((code >>> FACE_VALUE_SHIFT) & FIELD_MASK) + Constants.MIN_FACE_VALUE;
+	}
+
+	/**
+	 * Returns the 12-bit property mask of the card with the given code. Bits 0-3
+	 * represent the color, bits 4-7 the shape, and bits 8-11 the face value. A
+	 * concrete card has exactly three bits set, a wildcard has none.
+	 */
+	public static int propertyMask(int code) {
+		if (isWildcard(code)) {
+			return 0;
+		}
+		return (1 << ((code >>> COLOR_SHIFT) & FIELD_MASK)) |
+				(1 << (SHAPE_PROPERTY_OFFSET + ((code >>> SHAPE_SHIFT) & FIELD_MASK))) |
+				(1 << (FACE_VALUE_PROPERTY_OFFSET + ((code >>> FACE_VALUE_SHIFT) & FIELD_MASK)));
+	}
+
+	private static void checkConcrete(int code) {
+		checkArgument(code >= 0 && code < NUMBER_OF_CONCRETE_CODES, "Not a concrete card code: %s", code);
+	}
+
+	private CardCode() {/**/}
+
+}
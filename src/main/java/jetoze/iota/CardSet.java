@@ -0,0 +1,195 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * An immutable set of concrete cards, backed by a single {@code long}.
+ * <p>
+ * There are exactly 64 concrete cards, and bit <i>n</i> of the backing long
+ * represents the card with {@link CardCode code} <i>n</i>. Wildcards cannot be
+ * members of a CardSet.
+ */
+public final class CardSet implements Iterable<Card> {
+
+	private static final CardSet EMPTY = new CardSet(0L);
+
+	private static final CardSet ALL = new CardSet(-1L);
+
+	/**
+	 * For each of the 12 card properties, the cards that have that property.
+	 */
+	private static final long[] CARDS_WITH_PROPERTY = new long[CardCode.NUMBER_OF_PROPERTIES];
+
+	static {
+		for (int code = 0; code < CardCode.NUMBER_OF_CONCRETE_CODES; ++code) {
+			int mask = CardCode.propertyMask(code);
+			for (int p = 0; p < CardCode.NUMBER_OF_PROPERTIES; ++p) {
+				if ((mask & (1 << p)) != 0) {
+					CARDS_WITH_PROPERTY[p] |= bitOf(code);
+				}
+			}
+		}
+	}
+
+	public static CardSet empty() {
+		return EMPTY;
+	}
+
+	public static CardSet allCards() {
+		return ALL;
+	}
+
+	public static CardSet fromBits(long bits) {
+		if (bits == 0L) {
+			return EMPTY;
+		}
+		return (bits == -1L)
+				? ALL
+				: new CardSet(bits);
+	}
+
+	public static CardSet of(Card... cards) {
+		long bits = 0L;
+		for (Card c : cards) {
+			bits |= bitOf(c);
+		}
+		return fromBits(bits);
+	}
+
+	public static CardSet copyOf(Collection<? extends Card> cards) {
+		long bits = 0L;
+		for (Card c : cards) {
+			bits |= bitOf(c);
+		}
+		return fromBits(bits);
+	}
+
+	/**
+	 * Returns the bit representing the given concrete card.
+	 */
+	static long bitOf(Card card) {
+		checkNotNull(card);
+		checkArgument(!card.isWildcard(), "A CardSet cannot contain wildcards");
+		return bitOf(card.code());
+	}
+
+	/**
+	 * Returns the bit representing the card with the given concrete card code.
+	 */
+	static long bitOf(int code) {
+		return 1L << code;
+	}
+
+	/**
+	 * Returns the bits of all cards that have at least one of the properties in
+	 * the given property mask.
+	 */
+	static long cardsWithAnyProperty(int propertyMask) {
+		long bits = 0L;
+		for (int m = propertyMask; m != 0; m &= m - 1) {
+			bits |= CARDS_WITH_PROPERTY[Integer.numberOfTrailingZeros(m)];
+		}
+		return bits;
+	}
+
+	private final long bits;
+
+	private CardSet(long bits) {
+		this.bits = bits;
+	}
+
+	public long bits() {
+		return bits;
+	}
+
+	public boolean contains(Card card) {
+		checkNotNull(card);
+		return !card.isWildcard() && (bits & bitOf(card.code())) != 0L;
+	}
+
+	public int size() {
+		return Long.bitCount(bits);
+	}
+
+	public boolean isEmpty() {
+		return bits == 0L;
+	}
+
+	public CardSet intersect(CardSet other) {
+		return fromBits(this.bits & other.bits);
+	}
+
+	public CardSet union(CardSet other) {
+		return fromBits(this.bits | other.bits);
+	}
+
+	public CardSet without(CardSet other) {
+		return fromBits(this.bits & ~other.bits);
+	}
+
+	/**
+	 * Iterates over the cards in this set, in the order of their codes.
+	 */
+	@Override
+	public Iterator<Card> iterator() {
+		return new Iterator<Card>() {
+
+			private long remaining = bits;
+
+			@Override
+			public boolean hasNext() {
+				return remaining != 0L;
+			}
+
+			@Override
+			public Card next() {
+				if (remaining == 0L) {
+					throw new NoSuchElementException();
+				}
+				int code = Long.numberOfTrailingZeros(remaining);
+				remaining &= remaining - 1;
+				return Card.fromCode(code);
+			}
+		};
+	}
+
+	public Set<Card> toSet() {
+		return ImmutableSet.copyOf(this);
+	}
+
+	@Override
+	public boolean equals(@Nullable Object o) {
+		if (o == this) {
+			return true;
+		}
+		return (o instanceof CardSet) && this.bits == ((CardSet) o).bits;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(bits);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (Card c : this) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(c);
+		}
+		return sb.append("}").toString();
+	}
+
+}
@@ -1,8 +1,10 @@
 package jetoze.iota;
 
 import java.util.EnumSet;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.IntStream;
+
+import com.google.common.collect.ImmutableSet;
 
 public final class Constants {
 	
@@ -31,14 +33,18 @@ public final class Constants {
 	}
 
 	
+	private static final ImmutableSet<Object> ALL_CARD_PROPERTIES = ImmutableSet.builder()
+			.addAll(EnumSet.allOf(Color.class))
+			.addAll(EnumSet.allOf(Shape.class))
+			.addAll(IntStream.rangeClosed(MIN_FACE_VALUE, MAX_FACE_VALUE).boxed().iterator())
+			.build();
+	
+	/**
+	 * Returns all card properties: the colors, the shapes and the face values. 
+	 * The returned set is immutable.
+	 */
 	public static Set<Object> collectAllCardProperties() {
-		Set<Object> props = new HashSet<>();
-		props.addAll(EnumSet.allOf(Color.class));
-		props.addAll(EnumSet.allOf(Shape.class));
-		for (int i = MIN_FACE_VALUE; i <= MAX_FACE_VALUE; ++i) {
-			props.add(i);
-		}
-		return props;
+		return ALL_CARD_PROPERTIES;
 	}
 
 	private Constants() {/**/}
@@ -0,0 +1,193 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * A map from grid coordinates to values, using open addressing with linear
+ * probing over primitive keys. The row and column of a coordinate are packed
+ * into a single long using {@link Position#pack(int, int)}, so lookups do not
+ * box any Integers or create any Positions.
+ * <p>
+ * Null values are not allowed. This class is not thread-safe.
+ */
+final class CoordinateMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+
+	private Object[] values;
+
+	private int size;
+
+	public CoordinateMap() {
+		this(MIN_CAPACITY);
+	}
+
+	private CoordinateMap(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(int row, int col) {
+		return get(Position.pack(row, col)) != null;
+	}
+
+	@Nullable
+	public V get(int row, int col) {
+		return get(Position.pack(row, col));
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int mask = keys.length - 1;
+		for (int i = indexOf(key, mask); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Associates the given value with the given coordinate, and returns the
+	 * value previously associated with it, if any.
+	 */
+	@Nullable
+	public V put(int row, int col, V value) {
+		return put(Position.pack(row, col), value);
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		checkNotNull(value);
+		int mask = keys.length - 1;
+		int i = indexOf(key, mask);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		++size;
+		if (2 * size > keys.length) {
+			// Keep the load factor at or below 0.5, which keeps the probe
+			// sequences short.
+			rehash(2 * keys.length);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the value associated with the given coordinate, and returns it.
+	 */
+	@Nullable
+	public V remove(int row, int col) {
+		return remove(Position.pack(row, col));
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int mask = keys.length - 1;
+		int i = indexOf(key, mask);
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] == null) {
+			return null;
+		}
+		V old = (V) values[i];
+		// Shift subsequent entries of the probe sequence backwards, so that
+		// no tombstones are needed.
+		int gap = i;
+		for (int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = indexOf(keys[j], mask);
+			// The entry at j can be moved to the gap if its home slot is not
+			// cyclically in (gap, j].
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		values[gap] = null;
+		--size;
+		return old;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	public CoordinateMap<V> copy() {
+		CoordinateMap<V> copy = new CoordinateMap<>(keys.length);
+		System.arraycopy(this.keys, 0, copy.keys, 0, keys.length);
+		System.arraycopy(this.values, 0, copy.values, 0, values.length);
+		copy.size = this.size;
+		return copy;
+	}
+
+	/**
+	 * Visits all entries of this map, in no particular order.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryVisitor<? super V> visitor) {
+		for (int i = 0; i < keys.length; ++i) {
+			if (values[i] != null) {
+				long key = keys[i];
+				visitor.visit(Position.row(key), Position.col(key), (V) values[i]);
+			}
+		}
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new long[newCapacity];
+		this.values = new Object[newCapacity];
+		int mask = newCapacity - 1;
+		for (int n = 0; n < oldKeys.length; ++n) {
+			if (oldValues[n] != null) {
+				int i = indexOf(oldKeys[n], mask);
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[n];
+				values[i] = oldValues[n];
+			}
+		}
+	}
+
+	private static int indexOf(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return ((int) (h >>> 32) ^ (int) h) & mask;
+	}
+
+
+	@FunctionalInterface
+	public static interface EntryVisitor<V> {
+
+		void visit(int row, int col, V value);
+
+	}
+
+}
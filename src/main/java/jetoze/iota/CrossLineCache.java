@@ -0,0 +1,57 @@
+package jetoze.iota;
+
+import java.util.Arrays;
+
+/**
+ * Caches the lines through empty positions of a board, for cards that are
+ * tentatively placed there. Used when many plays are validated against the
+ * same board, in which case the same position is typically part of many
+ * plays.
+ * <p>
+ * A cache must only be used by one thread at a time, and becomes stale as soon
+ * as the board is modified.
+ */
+final class CrossLineCache {
+
+	/**
+	 * Marks a line that has not been looked up yet. Valid line summaries are
+	 * never negative.
+	 */
+	private static final long UNKNOWN = Long.MIN_VALUE;
+	
+	private static final int NUMBER_OF_CODES = CardCode.WILDCARD + 1;
+	
+	private final Board board;
+	
+	/**
+	 * For each position, the lines of each orientation for each card code.
+	 */
+	private final CoordinateMap<long[]> lines = new CoordinateMap<>();
+	
+	public CrossLineCache(Board board) {
+		this.board = board;
+	}
+	
+	/**
+	 * Returns the line of the given orientation through the given empty position,
+	 * if the card with the given code was placed there. 
+	 * 
+	 * @see Grid#scanCrossLine(Board, int, int, int, Orientation)
+	 */
+	public long get(int code, int row, int col, Orientation orientation) {
+		long[] linesOfPosition = lines.get(row, col);
+		if (linesOfPosition == null) {
+			linesOfPosition = new long[2 * NUMBER_OF_CODES];
+			Arrays.fill(linesOfPosition, UNKNOWN);
+			lines.put(row, col, linesOfPosition);
+		}
+		int index = orientation.ordinal() * NUMBER_OF_CODES + code;
+		long line = linesOfPosition[index];
+		if (line == UNKNOWN) {
+			line = Grid.scanCrossLine(board, code, row, col, orientation);
+			linesOfPosition[index] = line;
+		}
+		return line;
+	}
+	
+}
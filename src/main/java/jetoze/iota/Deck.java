@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 public final class Deck {
 
@@ -14,17 +15,33 @@ public final class Deck {
 		return deck;
 	}
 	
+	/**
+	 * Creates a deck shuffled with the given source of randomness. Decks 
+	 * shuffled with equally seeded sources have the same order.
+	 */
+	public static Deck newShuffledDeck(Random random) {
+		Deck deck = new Deck();
+		Collections.shuffle(deck.cards, random);
+		return deck;
+	}
+	
 	public static Deck of(Card... cards) {
 		return new Deck(Arrays.asList(cards));
 	}
 	
 	private final List<Card> cards = new ArrayList<>();
 	
+	/**
+	 * All cards that have been drawn from this deck, in the order they were
+	 * drawn.
+	 */
+	private final List<Card> drawnCards = new ArrayList<>();
+	
 	public Deck() {
 		for (int n = 0; n < Constants.NUMBER_OF_WILDCARDS; ++n) {
 			cards.add(Card.wildcard());
 		}
-		cards.addAll(Card.createPossibleCards(Constants.collectAllCardProperties()));
+		cards.addAll(Card.allConcreteCards());
 	}
 	
 	public Deck(Collection<Card> cards) {
@@ -46,9 +63,37 @@ public final class Deck {
 	
 	public Card next() {
 		Card next = cards.remove(cards.size() - 1);
+		drawnCards.add(next);
 		return next;
 	}
 	
+	/**
+	 * Returns the number of cards that have been drawn from this deck so far.
+	 */
+	int getNumberOfDrawnCards() {
+		return drawnCards.size();
+	}
+	
+	/**
+	 * Returns the cards that have been drawn from this deck, starting with the
+	 * given draw.
+	 */
+	List<Card> getDrawnCards(int from) {
+		return new ArrayList<>(drawnCards.subList(from, drawnCards.size()));
+	}
+	
+	/**
+	 * Returns the codes of the cards in this deck, in the order they will be
+	 * drawn.
+	 */
+	int[] getCardCodes() {
+		int[] codes = new int[cards.size()];
+		for (int n = 0; n < codes.length; ++n) {
+			codes[n] = cards.get(cards.size() - 1 - n).code();
+		}
+		return codes;
+	}
+	
 	public void addToBottom(Card... cards) {
 		addToBottom(Arrays.asList(cards));
 	}
@@ -0,0 +1,141 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Grid storage backed by a flat array covering a bounding box around origo.
+ * The bounding box grows when a card is put outside of it.
+ * <p>
+ * A game places at most 66 cards on the board, so the bounding box stays
+ * small. Looking up a neighbor is index arithmetic, and copying the storage
+ * is a single array copy.
+ */
+final class DenseGridStorage implements GridStorage {
+
+	private static final int INITIAL_EXTENT = 8;
+
+	private Card[] cells;
+
+	private int minRow;
+
+	private int minCol;
+
+	private int height;
+
+	private int width;
+
+	private int size;
+
+	public DenseGridStorage() {
+		this(-INITIAL_EXTENT / 2, -INITIAL_EXTENT / 2, INITIAL_EXTENT, INITIAL_EXTENT);
+	}
+
+	private DenseGridStorage(int minRow, int minCol, int height, int width) {
+		this.minRow = minRow;
+		this.minCol = minCol;
+		this.height = height;
+		this.width = width;
+		this.cells = new Card[height * width];
+	}
+
+	@Override
+	@Nullable
+	public Card get(int row, int col) {
+		int r = row - minRow;
+		int c = col - minCol;
+		if (r < 0 || r >= height || c < 0 || c >= width) {
+			return null;
+		}
+		return cells[r * width + c];
+	}
+
+	@Override
+	public void put(int row, int col, Card card) {
+		checkNotNull(card);
+		ensureCovers(row, col);
+		int index = indexOf(row, col);
+		if (cells[index] == null) {
+			++size;
+		}
+		cells[index] = card;
+	}
+
+	@Override
+	public void remove(int row, int col) {
+		int r = row - minRow;
+		int c = col - minCol;
+		if (r < 0 || r >= height || c < 0 || c >= width) {
+			return;
+		}
+		int index = r * width + c;
+		if (cells[index] != null) {
+			cells[index] = null;
+			--size;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		for (int n = 0; n < cells.length; ++n) {
+			if (cells[n] != null) {
+				visitor.visit(minRow + n / width, minCol + n % width, cells[n]);
+			}
+		}
+	}
+
+	@Override
+	public DenseGridStorage copy() {
+		DenseGridStorage copy = new DenseGridStorage(minRow, minCol, height, width);
+		System.arraycopy(this.cells, 0, copy.cells, 0, cells.length);
+		copy.size = this.size;
+		return copy;
+	}
+
+	private int indexOf(int row, int col) {
+		return (row - minRow) * width + (col - minCol);
+	}
+
+	private void ensureCovers(int row, int col) {
+		int newMinRow = minRow;
+		int newMinCol = minCol;
+		int newHeight = height;
+		int newWidth = width;
+		// Double the extent in the direction of the new position, until the
+		// position is covered.
+		while (row < newMinRow) {
+			newMinRow -= newHeight;
+			newHeight *= 2;
+		}
+		while (row >= newMinRow + newHeight) {
+			newHeight *= 2;
+		}
+		while (col < newMinCol) {
+			newMinCol -= newWidth;
+			newWidth *= 2;
+		}
+		while (col >= newMinCol + newWidth) {
+			newWidth *= 2;
+		}
+		if (newHeight == height && newWidth == width) {
+			return;
+		}
+		Card[] newCells = new Card[newHeight * newWidth];
+		for (int r = 0; r < height; ++r) {
+			int dest = (r + minRow - newMinRow) * newWidth + (minCol - newMinCol);
+			System.arraycopy(cells, r * width, newCells, dest, width);
+		}
+		this.cells = newCells;
+		this.minRow = newMinRow;
+		this.minCol = newMinCol;
+		this.height = newHeight;
+		this.width = newWidth;
+	}
+
+}
@@ -0,0 +1,181 @@
+package jetoze.iota;
+
+import static java.util.Comparator.comparingInt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Index of the open cells of a board, i.e. the empty positions adjacent to at
+ * least one card, and the cards allowed in each of them.
+ * <p>
+ * The index is updated locally: when a card is placed on or removed from the
+ * board, only the open cells whose lines pass through the changed position are
+ * marked as stale. Stale cells are recomputed the next time the index is
+ * queried.
+ */
+final class Frontier {
+
+	private final Board board;
+
+	/**
+	 * The open cells that are up to date, keyed by packed position.
+	 */
+	private final CoordinateMap<OpenCell> cells;
+
+	/**
+	 * The positions of the cells that must be recomputed. Only the keys matter.
+	 */
+	private final CoordinateMap<Boolean> stale;
+
+	/**
+	 * The index is not built until it is first queried, so that grids that are
+	 * never asked about their open cells do not pay for it.
+	 */
+	private boolean initialized;
+
+	public Frontier(Board board) {
+		this.board = board;
+		this.cells = new CoordinateMap<>();
+		this.stale = new CoordinateMap<>();
+	}
+
+	private Frontier(Board board, Frontier source) {
+		this.board = board;
+		this.cells = source.cells.copy();
+		this.stale = source.stale.copy();
+		this.initialized = source.initialized;
+	}
+
+	/**
+	 * Returns a copy of this index for a copy of the board.
+	 */
+	public Frontier copy(Board copyOfBoard) {
+		return new Frontier(copyOfBoard, this);
+	}
+
+	/**
+	 * Marks the open cells affected by a change in the given position as stale.
+	 * This must be called while the position is occupied, i.e. after a card has
+	 * been placed, or before a card is removed.
+	 */
+	public void invalidateAround(int row, int col) {
+		if (!initialized) {
+			return;
+		}
+		markStale(row, col);
+		for (Orientation o : Orientation.values()) {
+			int dRow = o.rowStep();
+			int dCol = o.colStep();
+			markEndsOfRun(row, col, o);
+			// A wildcard in the run constrains the open cells at the ends of its
+			// perpendicular run, since they must agree on what the wildcard is.
+			for (int r = row, c = col; board.contains(r, c); r -= dRow, c -= dCol) {
+				if (board.get(r, c).isWildcard()) {
+					markEndsOfRun(r, c, o.perpendicular());
+				}
+			}
+			for (int r = row + dRow, c = col + dCol; board.contains(r, c); r += dRow, c += dCol) {
+				if (board.get(r, c).isWildcard()) {
+					markEndsOfRun(r, c, o.perpendicular());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns all open cells, sorted by row and then column.
+	 */
+	public List<OpenCell> getOpenCells() {
+		if (board.isEmpty()) {
+			return Arrays.asList(origo());
+		}
+		refresh();
+		List<OpenCell> list = new ArrayList<>(cells.size());
+		cells.forEach((row, col, cell) -> list.add(cell));
+		list.sort(comparingInt((OpenCell c) -> c.getPosition().row).thenComparingInt(c -> c.getPosition().col));
+		return list;
+	}
+
+	/**
+	 * Returns the open cell in the given position, or {@code null} if the
+	 * position is not open.
+	 */
+	@Nullable
+	public OpenCell get(int row, int col) {
+		if (board.isEmpty()) {
+			return (row == 0 && col == 0)
+					? origo()
+					: null;
+		}
+		refresh();
+		return cells.get(row, col);
+	}
+
+	private static OpenCell origo() {
+		// The first card can be any card, and is by definition placed in origo.
+		return new OpenCell(new Position(0, 0), CardSet.allCards(), true);
+	}
+
+	private void refresh() {
+		if (!initialized) {
+			initialized = true;
+			board.forEach((row, col, card) -> markStale(row, col));
+		}
+		stale.forEach((row, col, b) -> {
+			if (isOpen(row, col)) {
+				cells.put(row, col, computeOpenCell(row, col));
+			} else {
+				cells.remove(row, col);
+			}
+		});
+		stale.clear();
+	}
+
+	private boolean isOpen(int row, int col) {
+		return !board.contains(row, col) && board.hasNeighbor(row, col);
+	}
+
+	private OpenCell computeOpenCell(int row, int col) {
+		long allowed = 0L;
+		for (int code = 0; code < CardCode.NUMBER_OF_CONCRETE_CODES; ++code) {
+			if (Grid.isCardAllowed(board, code, row, col)) {
+				allowed |= CardSet.bitOf(code);
+			}
+		}
+		boolean wildcardAllowed = Grid.isCardAllowed(board, CardCode.WILDCARD, row, col);
+		return new OpenCell(new Position(row, col), CardSet.fromBits(allowed), wildcardAllowed);
+	}
+
+	/**
+	 * Marks the given position and its four neighbors as stale.
+	 */
+	private void markStale(int row, int col) {
+		addStale(row, col);
+		addStale(row - 1, col);
+		addStale(row + 1, col);
+		addStale(row, col - 1);
+		addStale(row, col + 1);
+	}
+
+	/**
+	 * Marks the empty positions just beyond both ends of the run of cards of the
+	 * given orientation through the given occupied position as stale.
+	 */
+	private void markEndsOfRun(int row, int col, Orientation orientation) {
+		int dRow = orientation.rowStep();
+		int dCol = orientation.colStep();
+		int before = board.distanceToEnd(row, col, -dRow, -dCol) + 1;
+		int after = board.distanceToEnd(row, col, dRow, dCol) + 1;
+		addStale(row - before * dRow, col - before * dCol);
+		addStale(row + after * dRow, col + after * dCol);
+	}
+
+	private void addStale(int row, int col) {
+		stale.put(row, col, Boolean.TRUE);
+	}
+
+}
@@ -0,0 +1,376 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+/**
+ * A file backed archive of completed games.
+ * <p>
+ * The games are stored as a stream of records in the format written by the
+ * {@link GameRecordWriter}, so the data file can also be read from start to 
+ * end with a {@link GameRecordReader}. Next to the data file the archive keeps
+ * an index file, holding the number of games followed by the offset of the end
+ * of each record. Both files are memory mapped, which means that jumping to 
+ * any game is a lookup in the index, and that the records are read straight 
+ * from the page cache without being copied into the heap. A record is only
+ * decoded into a {@link GameLog} when asked, and a log can in turn be replayed
+ * into a {@link GameState} with {@link GameState#replay(GameLog, int, boolean)}.
+ * <p>
+ * The data file is mapped in segments of 1 GB, each overlapping the next one
+ * by 1 MB, so that any record starting in a segment can be sliced from it.
+ * Larger records are copied out of the file instead.
+ * <p>
+ * All methods are synchronized. The buffers handed out by the archive are
+ * independent of each other, and can be read by any thread.
+ */
+public final class GameArchive implements Closeable {
+
+	private static final int SEGMENT_SIZE = 1 << 30;
+	
+	private static final int SEGMENT_OVERLAP = 1 << 20;
+	
+	/**
+	 * The number of index entries the index file is grown by at a time.
+	 */
+	private static final int INDEX_CHUNK = 1 << 16;
+	
+	private final FileChannel data;
+	
+	private final FileChannel indexFile;
+	
+	private final boolean readOnly;
+	
+	private final int segmentSize;
+	
+	private final int segmentOverlap;
+	
+	/**
+	 * The mapped index. The first long is the number of games, followed by the
+	 * offset of the end of each record.
+	 */
+	private MappedByteBuffer index;
+	
+	private int numberOfGames;
+	
+	/**
+	 * The offset of the end of the last record.
+	 */
+	private long dataSize;
+	
+	/**
+	 * The mapped segments of the data file, or null for segments that have not
+	 * been mapped yet.
+	 */
+	private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	
+	private int numberOfMappings;
+	
+	private ByteBuffer encodingBuffer = ByteBuffer.allocate(1 << 12);
+	
+	private boolean closed;
+	
+	private GameArchive(FileChannel data, FileChannel indexFile, boolean readOnly, 
+			int segmentSize, int segmentOverlap) throws IOException {
+		this.data = data;
+		this.indexFile = indexFile;
+		this.readOnly = readOnly;
+		this.segmentSize = segmentSize;
+		this.segmentOverlap = segmentOverlap;
+		if (indexFile.size() == 0L) {
+			if (readOnly || data.size() > GameRecordFormat.HEADER_SIZE) {
+				throw new IOException("Missing index file");
+			}
+			mapIndex(INDEX_CHUNK);
+			index.putLong(0, 0L);
+		} else {
+			mapIndex((int) (indexFile.size() / Long.BYTES) - 1);
+			numberOfGames = Math.toIntExact(index.getLong(0));
+		}
+		this.dataSize = (numberOfGames > 0)
+				? endOf(numberOfGames - 1)
+				: GameRecordFormat.HEADER_SIZE;
+		if (data.size() == 0L && !readOnly) {
+			ByteBuffer header = ByteBuffer.allocate(GameRecordFormat.HEADER_SIZE);
+			GameRecordFormat.writeHeader(header);
+			header.flip();
+			writeFully(header, 0L);
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(GameRecordFormat.HEADER_SIZE);
+			readFully(header, 0L);
+			header.flip();
+			try {
+				GameRecordFormat.readHeader(header);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+		if (data.size() < dataSize) {
+			throw new EOFException("The data file is shorter than the index says");
+		}
+		if (!readOnly) {
+			// Drop any record that was written, but never made it into the index.
+			data.truncate(dataSize);
+		}
+	}
+	
+	/**
+	 * Opens the archive with the given data file for reading and appending. The
+	 * index is kept in a file next to the data file, with the extension 
+	 * {@code .idx} appended to its name. Both files are created if they do not
+	 * exist.
+	 */
+	public static GameArchive open(Path dataFile) throws IOException {
+		return open(dataFile, false, SEGMENT_SIZE, SEGMENT_OVERLAP);
+	}
+	
+	/**
+	 * Opens an existing archive for reading only.
+	 */
+	public static GameArchive openReadOnly(Path dataFile) throws IOException {
+		return open(dataFile, true, SEGMENT_SIZE, SEGMENT_OVERLAP);
+	}
+	
+	static GameArchive open(Path dataFile, boolean readOnly, int segmentSize, int segmentOverlap) throws IOException {
+		checkNotNull(dataFile);
+		checkArgument(segmentSize > 0 && segmentOverlap >= 0 && segmentSize + segmentOverlap > 0);
+		Path indexFile = dataFile.resolveSibling(dataFile.getFileName() + ".idx");
+		StandardOpenOption[] options = readOnly
+				? new StandardOpenOption[] {StandardOpenOption.READ}
+				: new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+		FileChannel data = FileChannel.open(dataFile, options);
+		try {
+			FileChannel index = FileChannel.open(indexFile, options);
+			try {
+				return new GameArchive(data, index, readOnly, segmentSize, segmentOverlap);
+			} catch (IOException | RuntimeException e) {
+				index.close();
+				throw e;
+			}
+		} catch (IOException | RuntimeException e) {
+			data.close();
+			throw e;
+		}
+	}
+	
+	private void mapIndex(int capacity) throws IOException {
+		index = indexFile.map(readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE, 0L, 
+				(capacity + 1L) * Long.BYTES);
+	}
+	
+	private long endOf(int game) {
+		return index.getLong((game + 1) * Long.BYTES);
+	}
+	
+	private long startOf(int game) {
+		return (game == 0)
+				? GameRecordFormat.HEADER_SIZE
+				: endOf(game - 1);
+	}
+	
+	/**
+	 * Returns the number of games in the archive.
+	 */
+	public synchronized int size() {
+		return numberOfGames;
+	}
+	
+	/**
+	 * Appends a game to the archive.
+	 * 
+	 * @return the index of the game in the archive.
+	 */
+	public synchronized int append(GameLog log) throws IOException {
+		checkNotNull(log);
+		checkState(!closed, "The archive has been closed");
+		checkState(!readOnly, "The archive is read-only");
+		int size = GameRecordFormat.maxEncodedSize(log);
+		if (encodingBuffer.capacity() < size) {
+			encodingBuffer = ByteBuffer.allocate(Math.max(size, 2 * encodingBuffer.capacity()));
+		}
+		encodingBuffer.clear();
+		GameRecordFormat.encode(log, encodingBuffer);
+		encodingBuffer.flip();
+		long end = dataSize + encodingBuffer.remaining();
+		writeFully(encodingBuffer, dataSize);
+		if ((numberOfGames + 2L) * Long.BYTES > index.capacity()) {
+			checkState(numberOfGames + INDEX_CHUNK < Integer.MAX_VALUE / Long.BYTES, "The archive is full");
+			mapIndex(numberOfGames + INDEX_CHUNK);
+		}
+		// The record is in place before the index refers to it, and the game is
+		// counted only once the index entry is in place.
+		index.putLong((numberOfGames + 1) * Long.BYTES, end);
+		index.putLong(0, numberOfGames + 1);
+		dataSize = end;
+		return numberOfGames++;
+	}
+	
+	/**
+	 * Returns the record of the given game, starting with its length prefix, 
+	 * as a read-only buffer. The buffer is normally a slice of the mapped data
+	 * file, which means no bytes are copied. The record can be decoded with 
+	 * {@link GameRecordReader#decode(ByteBuffer)}.
+	 */
+	public synchronized ByteBuffer getRecord(int game) throws IOException {
+		checkState(!closed, "The archive has been closed");
+		checkArgument(game >= 0 && game < numberOfGames, "No such game: %s", game);
+		long start = startOf(game);
+		int length = Math.toIntExact(endOf(game) - start);
+		int segment = (int) (start / segmentSize);
+		int offsetInSegment = (int) (start % segmentSize);
+		ByteBuffer mapped = (offsetInSegment + length <= segmentSize + segmentOverlap)
+				? segment(segment, offsetInSegment + length)
+				: null;
+		if (mapped == null) {
+			// The record sticks out of the segment, or is not mapped yet. Copy it 
+			// instead.
+			ByteBuffer record = ByteBuffer.allocate(length);
+			readFully(record, start);
+			record.flip();
+			return record.asReadOnlyBuffer();
+		}
+		ByteBuffer buffer = mapped.duplicate();
+		buffer.position(offsetInSegment).limit(offsetInSegment + length);
+		return buffer.slice();
+	}
+	
+	/**
+	 * Returns the mapped segment, if it covers at least {@code minimumSize} 
+	 * bytes, or null if it does not.
+	 * <p>
+	 * A segment is mapped up to the end of the data file. The last segment 
+	 * grows as games are appended, but it is only remapped once the data
+	 * past the end of the mapping is at least as large as the mapping itself,
+	 * or the segment is complete. In between, the records that are not mapped 
+	 * yet are copied by the caller. This keeps the number of mappings 
+	 * logarithmic in the size of the segment, instead of one mapping per read
+	 * when reads and appends are interleaved.
+	 */
+	@Nullable
+	private MappedByteBuffer segment(int segment, int minimumSize) throws IOException {
+		if (segment >= segments.length) {
+			MappedByteBuffer[] larger = new MappedByteBuffer[segment + 1];
+			System.arraycopy(segments, 0, larger, 0, segments.length);
+			segments = larger;
+		}
+		MappedByteBuffer mapped = segments[segment];
+		if (mapped == null || mapped.capacity() < minimumSize) {
+			long start = (long) segment * segmentSize;
+			long fullSize = segmentSize + segmentOverlap;
+			long size = Math.min(fullSize, dataSize - start);
+			if (mapped != null && size < fullSize && size < 2L * mapped.capacity()) {
+				return null;
+			}
+			mapped = data.map(MapMode.READ_ONLY, start, size);
+			segments[segment] = mapped;
+			++numberOfMappings;
+		}
+		return mapped;
+	}
+	
+	/**
+	 * Returns the number of times a segment of the data file has been mapped.
+	 */
+	synchronized int getNumberOfMappings() {
+		return numberOfMappings;
+	}
+	
+	/**
+	 * Returns the given game.
+	 */
+	public GameLog getGame(int game) throws IOException {
+		ByteBuffer record = getRecord(game);
+		try {
+			return GameRecordReader.decode(record);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt record of game " + game, e);
+		}
+	}
+	
+	/**
+	 * Returns the records of all games in the archive, in order. The stream 
+	 * covers the games that were in the archive when it was created.
+	 * 
+	 * @see #getRecord(int)
+	 */
+	public Stream<ByteBuffer> records() {
+		return IntStream.range(0, size()).mapToObj(n -> {
+			try {
+				return getRecord(n);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+	
+	/**
+	 * Returns all games in the archive, in order. Each game is decoded as the
+	 * stream reaches it. A record that cannot be read or decoded fails the 
+	 * stream with an {@link UncheckedIOException}, as {@link #getGame(int)} 
+	 * would.
+	 */
+	public Stream<GameLog> games() {
+		return IntStream.range(0, size()).mapToObj(n -> {
+			try {
+				return getGame(n);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+	
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += data.write(buffer, position);
+		}
+	}
+	
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = data.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			position += read;
+		}
+	}
+	
+	/**
+	 * Forces all appended games to the storage device.
+	 */
+	public synchronized void flush() throws IOException {
+		if (!readOnly) {
+			data.force(false);
+			index.force();
+		}
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try {
+				flush();
+				data.close();
+			} finally {
+				indexFile.close();
+			}
+		}
+	}
+	
+}
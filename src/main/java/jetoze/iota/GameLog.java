@@ -0,0 +1,111 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An append-only log of the turns of a game. Together with the names of the
+ * players and the order of the cards in the deck when the game started, the
+ * log has all the information needed to reconstruct any position of the game.
+ * 
+ * @see GameState#replay(GameLog, int, boolean)
+ */
+public final class GameLog {
+
+	private final ImmutableList<String> playerNames;
+	
+	/**
+	 * The codes of the cards in the deck when the game started, in the order
+	 * they are drawn.
+	 */
+	private final int[] initialDeck;
+	
+	private final List<TurnRecord> turns = new ArrayList<>();
+	
+	GameLog(List<String> playerNames, int[] initialDeck) {
+		checkArgument(playerNames.size() >= 2 && playerNames.size() <= Constants.MAX_NUMBER_OF_PLAYERS);
+		this.playerNames = ImmutableList.copyOf(playerNames);
+		this.initialDeck = checkNotNull(initialDeck);
+	}
+	
+	/**
+	 * Appends a turn to the log.
+	 */
+	void append(TurnRecord turn) {
+		checkNotNull(turn);
+		checkArgument(turn.getPlayerIndex() < playerNames.size());
+		turns.add(turn);
+	}
+	
+	public ImmutableList<String> getPlayerNames() {
+		return playerNames;
+	}
+	
+	public int getNumberOfPlayers() {
+		return playerNames.size();
+	}
+	
+	/**
+	 * Returns the codes of the cards in the deck when the game started, in the
+	 * order they were drawn.
+	 */
+	public int[] getInitialDeck() {
+		return initialDeck.clone();
+	}
+	
+	/**
+	 * Creates a deck with the cards of the deck when the game started, in the
+	 * same order.
+	 */
+	Deck createInitialDeck() {
+		Card[] cards = new Card[initialDeck.length];
+		for (int n = 0; n < cards.length; ++n) {
+			cards[n] = Card.fromCode(initialDeck[n]);
+		}
+		return Deck.of(cards);
+	}
+	
+	public int getNumberOfTurns() {
+		return turns.size();
+	}
+	
+	public TurnRecord getTurn(int n) {
+		return turns.get(n);
+	}
+	
+	/**
+	 * Returns an unmodifiable view of the turns in the log.
+	 */
+	public List<TurnRecord> getTurns() {
+		return Collections.unmodifiableList(turns);
+	}
+	
+	@Override
+	public boolean equals(@Nullable Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof GameLog) {
+			GameLog that = (GameLog) o;
+			return this.playerNames.equals(that.playerNames) &&
+					Arrays.equals(this.initialDeck, that.initialDeck) &&
+					this.turns.equals(that.turns);
+		}
+		return false;
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * (31 * playerNames.hashCode() + Arrays.hashCode(initialDeck)) + turns.hashCode();
+	}
+	
+}
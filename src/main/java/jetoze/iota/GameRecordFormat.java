@@ -0,0 +1,255 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary encoding of a {@link GameLog}.
+ * <p>
+ * A stream of game records starts with a header of the magic number
+ * {@code "IOTA"} and a version byte, followed by the records. Each record is
+ * prefixed by its length as a varint, so that readers can skip records without
+ * decoding them. A record consists of:
+ * <ul>
+ * <li>the number of players, followed by the name of each player as a varint
+ * length and the UTF-8 bytes of the name</li>
+ * <li>the number of cards in the initial deck as a varint, followed by the
+ * code of each card, in the order they are drawn, as a single byte</li>
+ * <li>the number of turns as a varint, followed by the turns</li>
+ * </ul>
+ * Each turn starts with a byte holding the type of the turn in bit 7, the
+ * player index in bits 4-5, and the number of played or traded cards in bits
+ * 0-2. The codes of the cards follow, one byte each. A play continues with the
+ * position of each played card, as the zigzag encoded differences in row and 
+ * column from the previously played card (or origo, for the first card of the
+ * game), and the points as a varint. Finally the number of drawn cards and 
+ * their codes follow, one byte each.
+ */
+final class GameRecordFormat {
+
+	/**
+	 * {@code "IOTA"} in ASCII.
+	 */
+	static final int MAGIC = 0x494F5441;
+	
+	static final byte VERSION = 1;
+	
+	static final int HEADER_SIZE = 5;
+	
+	/**
+	 * The maximum number of bytes of a varint encoded int.
+	 */
+	static final int MAX_VARINT_SIZE = 5;
+	
+	/**
+	 * An upper bound of the encoded size of a turn.
+	 */
+	private static final int MAX_TURN_SIZE = 1 + 2 * Constants.MAX_LINE_LENGTH * (1 + 2 * MAX_VARINT_SIZE) + 
+			2 * MAX_VARINT_SIZE;
+	
+	private static final int PASS_BIT = 0x80;
+	
+	private static final int PLAYER_SHIFT = 4;
+	
+	private static final int NUMBER_OF_CARDS_MASK = 0x7;
+	
+	static void writeHeader(ByteBuffer buffer) {
+		buffer.putInt(MAGIC).put(VERSION);
+	}
+	
+	/**
+	 * Reads the header of a stream of game records.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the header is not a valid header.
+	 */
+	static void readHeader(ByteBuffer buffer) {
+		checkArgument(buffer.getInt() == MAGIC, "Not a stream of game records");
+		byte version = buffer.get();
+		checkArgument(version == VERSION, "Unsupported version: %s", version);
+	}
+	
+	/**
+	 * Returns an upper bound of the size of the given log when encoded, 
+	 * including the length prefix.
+	 */
+	static int maxEncodedSize(GameLog log) {
+		int size = 2 * MAX_VARINT_SIZE + 1;
+		for (String name : log.getPlayerNames()) {
+			size += MAX_VARINT_SIZE + 3 * name.length();
+		}
+		size += MAX_VARINT_SIZE + log.getInitialDeck().length;
+		size += MAX_VARINT_SIZE + MAX_TURN_SIZE * log.getNumberOfTurns();
+		return size;
+	}
+	
+	/**
+	 * Encodes the given log, including the length prefix, into the buffer. The
+	 * buffer must have room for {@link #maxEncodedSize(GameLog)} bytes.
+	 */
+	static void encode(GameLog log, ByteBuffer buffer) {
+		// Leave room for the length prefix, and move the record into place once
+		// its length is known.
+		int start = buffer.position();
+		buffer.position(start + MAX_VARINT_SIZE);
+		encodeBody(log, buffer);
+		int end = buffer.position();
+		int length = end - start - MAX_VARINT_SIZE;
+		buffer.position(start);
+		writeVarint(buffer, length);
+		int bodyStart = buffer.position();
+		if (bodyStart != start + MAX_VARINT_SIZE) {
+			ByteBuffer body = buffer.duplicate();
+			body.position(start + MAX_VARINT_SIZE).limit(end);
+			buffer.put(body);
+		} else {
+			buffer.position(end);
+		}
+	}
+	
+	private static void encodeBody(GameLog log, ByteBuffer buffer) {
+		buffer.put((byte) log.getNumberOfPlayers());
+		for (String name : log.getPlayerNames()) {
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			writeVarint(buffer, bytes.length);
+			buffer.put(bytes);
+		}
+		int[] deck = log.getInitialDeck();
+		writeVarint(buffer, deck.length);
+		for (int code : deck) {
+			buffer.put((byte) code);
+		}
+		writeVarint(buffer, log.getNumberOfTurns());
+		int row = 0;
+		int col = 0;
+		for (TurnRecord turn : log.getTurns()) {
+			boolean pass = (turn.getType() == TurnRecord.Type.PASS);
+			int numberOfCards = turn.getNumberOfCards();
+			buffer.put((byte) ((pass ? PASS_BIT : 0) | (turn.getPlayerIndex() << PLAYER_SHIFT) | numberOfCards));
+			for (int n = 0; n < numberOfCards; ++n) {
+				buffer.put((byte) turn.getCardCode(n));
+			}
+			if (!pass) {
+				for (int n = 0; n < numberOfCards; ++n) {
+					long p = turn.getPosition(n);
+					writeVarint(buffer, zigzag(Position.row(p) - row));
+					writeVarint(buffer, zigzag(Position.col(p) - col));
+					row = Position.row(p);
+					col = Position.col(p);
+				}
+				writeVarint(buffer, turn.getPoints());
+			}
+			buffer.put((byte) turn.getNumberOfDrawnCards());
+			for (int n = 0; n < turn.getNumberOfDrawnCards(); ++n) {
+				buffer.put((byte) turn.getDrawnCardCode(n));
+			}
+		}
+	}
+	
+	/**
+	 * Decodes the record at the position of the buffer, starting with the 
+	 * length prefix, and moves the position to the end of the record.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the record is corrupt.
+	 */
+	static GameLog decode(ByteBuffer buffer) {
+		int length = readVarint(buffer);
+		checkArgument(length <= buffer.remaining(), "Truncated game record");
+		ByteBuffer body = buffer.slice();
+		body.limit(length);
+		buffer.position(buffer.position() + length);
+		try {
+			GameLog log = decodeBody(body);
+			checkArgument(!body.hasRemaining(), "Trailing bytes after game record");
+			return log;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated game record", e);
+		}
+	}
+	
+	private static GameLog decodeBody(ByteBuffer buffer) {
+		int numberOfPlayers = buffer.get();
+		List<String> names = new ArrayList<>(numberOfPlayers);
+		for (int n = 0; n < numberOfPlayers; ++n) {
+			byte[] bytes = new byte[readVarint(buffer)];
+			buffer.get(bytes);
+			names.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+		int[] deck = readCodes(buffer, readVarint(buffer));
+		GameLog log = new GameLog(names, deck);
+		int numberOfTurns = readVarint(buffer);
+		int row = 0;
+		int col = 0;
+		for (int t = 0; t < numberOfTurns; ++t) {
+			int header = buffer.get() & 0xFF;
+			boolean pass = (header & PASS_BIT) != 0;
+			int playerIndex = (header >> PLAYER_SHIFT) & 0x3;
+			int[] codes = readCodes(buffer, header & NUMBER_OF_CARDS_MASK);
+			long[] positions = new long[pass ? 0 : codes.length];
+			int points = 0;
+			if (!pass) {
+				for (int n = 0; n < positions.length; ++n) {
+					row += unzigzag(readVarint(buffer));
+					col += unzigzag(readVarint(buffer));
+					positions[n] = Position.pack(row, col);
+				}
+				points = readVarint(buffer);
+			}
+			int[] drawn = readCodes(buffer, buffer.get());
+			log.append(new TurnRecord(pass ? TurnRecord.Type.PASS : TurnRecord.Type.PLAY, 
+					playerIndex, codes, positions, points, drawn));
+		}
+		return log;
+	}
+	
+	private static int[] readCodes(ByteBuffer buffer, int count) {
+		checkArgument(count >= 0 && count <= buffer.remaining(), "Truncated game record");
+		int[] codes = new int[count];
+		for (int n = 0; n < count; ++n) {
+			codes[n] = buffer.get();
+			checkArgument(CardCode.isValid(codes[n]), "Invalid card code: %s", codes[n]);
+		}
+		return codes;
+	}
+	
+	static void writeVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+	
+	static int readVarint(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+			int b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+	
+	/**
+	 * Maps signed integers to unsigned, so that numbers close to zero have a 
+	 * short varint encoding.
+	 */
+	static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+	
+	static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+	
+	private GameRecordFormat() {/**/}
+	
+}
@@ -0,0 +1,137 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.util.Optional;
+
+/**
+ * Reads {@link GameLog game logs} written by a {@link GameRecordWriter} from a
+ * channel, one game at a time.
+ */
+public final class GameRecordReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private final ReadableByteChannel channel;
+	
+	/**
+	 * The bytes read from the channel but not yet decoded. Always kept ready 
+	 * for reading.
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	
+	private boolean endOfStream;
+	
+	/**
+	 * Creates a reader of the given channel, and reads the header of the 
+	 * stream.
+	 * <p>
+	 * The channel must be in blocking mode, and stay in it. A non-blocking 
+	 * channel can read no bytes at all when no data is available yet, and the
+	 * reader has no way to wait for it other than spinning.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the channel is a {@link SelectableChannel} in 
+	 *             non-blocking mode.
+	 * @throws IOException
+	 *             if the channel does not start with a valid header.
+	 */
+	public GameRecordReader(ReadableByteChannel channel) throws IOException {
+		this.channel = checkNotNull(channel);
+		checkArgument(!(channel instanceof SelectableChannel) || ((SelectableChannel) channel).isBlocking(), 
+				"Non-blocking channels are not supported");
+		buffer.limit(0);
+		if (!fill(GameRecordFormat.HEADER_SIZE)) {
+			throw new EOFException("Missing header");
+		}
+		try {
+			GameRecordFormat.readHeader(buffer);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Decodes the game record at the position of the given buffer, and moves 
+	 * the position to the end of the record. This is how records are read from
+	 * a buffer that maps a stream of records directly, without going through a
+	 * channel.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the record is corrupt.
+	 */
+	public static GameLog decode(ByteBuffer buffer) {
+		return GameRecordFormat.decode(buffer);
+	}
+	
+	/**
+	 * Reads the next game from the stream.
+	 * 
+	 * @return the game, or an empty Optional at the end of the stream.
+	 * @throws IOException
+	 *             if the stream ends in the middle of a record, or the record
+	 *             is corrupt.
+	 */
+	public Optional<GameLog> read() throws IOException {
+		if (!fill(1)) {
+			return Optional.empty();
+		}
+		// Buffer the length prefix. It may be shorter than the maximum varint
+		// size, and then the stream may end before that.
+		fill(GameRecordFormat.MAX_VARINT_SIZE);
+		int recordSize;
+		try {
+			ByteBuffer prefix = buffer.duplicate();
+			int length = GameRecordFormat.readVarint(prefix);
+			recordSize = prefix.position() - buffer.position() + length;
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Truncated game record");
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt game record", e);
+		}
+		if (!fill(recordSize)) {
+			throw new EOFException("Truncated game record");
+		}
+		try {
+			return Optional.of(GameRecordFormat.decode(buffer));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt game record", e);
+		}
+	}
+	
+	/**
+	 * Reads from the channel until at least the given number of bytes are 
+	 * buffered, or the end of the stream is reached. Since the channel is 
+	 * blocking, every read returns at least one byte or the end of the stream.
+	 * 
+	 * @return true if the bytes are buffered.
+	 */
+	private boolean fill(int size) throws IOException {
+		while (buffer.remaining() < size && !endOfStream) {
+			if (buffer.capacity() < size) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(size, 2 * buffer.capacity()));
+				larger.put(buffer);
+				buffer = larger;
+			} else {
+				buffer.compact();
+			}
+			endOfStream = (channel.read(buffer) < 0);
+			buffer.flip();
+		}
+		return buffer.remaining() >= size;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+}
@@ -0,0 +1,100 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes {@link GameLog game logs} to a channel in the compact binary format
+ * described in {@link GameRecordFormat}. The records are buffered, and written
+ * to the channel in large chunks.
+ * 
+ * @see GameRecordReader
+ */
+public final class GameRecordWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private final WritableByteChannel channel;
+	
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	
+	/**
+	 * The number of bytes written to the channel so far.
+	 */
+	private long bytesWritten;
+	
+	private boolean closed;
+	
+	/**
+	 * Creates a writer that starts a new stream of game records on the given
+	 * channel.
+	 */
+	public GameRecordWriter(WritableByteChannel channel) {
+		this(channel, true);
+	}
+	
+	/**
+	 * @param writeHeader
+	 *            false if the records are appended to an existing stream, 
+	 *            which already has a header.
+	 */
+	GameRecordWriter(WritableByteChannel channel, boolean writeHeader) {
+		this.channel = checkNotNull(channel);
+		if (writeHeader) {
+			GameRecordFormat.writeHeader(buffer);
+		}
+	}
+	
+	/**
+	 * Writes a game to the stream.
+	 * 
+	 * @return the offset of the record, relative to the first byte written by
+	 *         this writer.
+	 */
+	public long write(GameLog log) throws IOException {
+		checkNotNull(log);
+		checkState(!closed, "The writer has been closed");
+		int size = GameRecordFormat.maxEncodedSize(log);
+		if (buffer.remaining() < size) {
+			flush();
+			if (buffer.capacity() < size) {
+				buffer = ByteBuffer.allocate(size);
+			}
+		}
+		long offset = bytesWritten + buffer.position();
+		GameRecordFormat.encode(log, buffer);
+		return offset;
+	}
+	
+	/**
+	 * Writes all buffered records to the channel.
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			bytesWritten += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Flushes the buffered records, and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+	
+}
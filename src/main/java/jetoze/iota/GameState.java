@@ -5,6 +5,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.stream.Collectors.toList;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,11 +36,22 @@ public final class GameState {
 	
 	private final Map<Card, PlacedCard> placedCards = new HashMap<>();
 	
+	/**
+	 * The placed cards, laid over the grid.
+	 */
+	private final PlacementPreview preview = new PlacementPreview(grid);
+	
 	private final List<GameStateObserver> observers = new CopyOnWriteArrayList<>();
 	
 	@Nullable
 	private GameResult gameResult;
 	
+	/**
+	 * The log of the turns played so far. Created when the game starts.
+	 */
+	@Nullable
+	private GameLog log;
+	
 	public GameState() {
 		this(ImmutableList.of(new Player("Alice"), new Player("John")));
 	}
@@ -55,6 +67,7 @@ public final class GameState {
 	}
 
 	public void start() {
+		this.log = new GameLog(players.stream().map(Player::getName).collect(toList()), deck.getCardCodes());
 		giveCardsToPlayers();
 		Card startCard = placeFirstCard();
 		setPlayerInTurn(0);
@@ -83,15 +96,159 @@ public final class GameState {
 		return Optional.of(new PlayLineAction(lineItems));
 	}
 	
+	/**
+	 * Completes the turn of the player in turn by invoking the given action.
+	 * If the action succeeds, and is a {@link PlayLineAction} or a 
+	 * {@link PassAction}, the turn is recorded in the {@link #getLog() log}. 
+	 * Turns completed with any other kind of action, or before the game has
+	 * started, are not recorded, which means the log cannot be replayed past
+	 * them.
+	 */
 	public Result completeTurn(GameAction action) {
+		boolean recorded = (log != null) && 
+				(action instanceof PlayLineAction || action instanceof PassAction);
+		int pointsBefore = recorded ? playerInTurn.getPoints() : 0;
+		int drawsBefore = deck.getNumberOfDrawnCards();
 		Result result = action.invoke(playerInTurn, grid, deck);
 		if (result.isSuccess()) {
+			if (recorded) {
+				log.append(recordTurn(action, pointsBefore, drawsBefore));
+			}
 			switchPlayer();
 			getGameResult().ifPresent(r -> observers.forEach(o -> o.gameOver(r)));
 		}
 		return result;
 	}
 	
+	private TurnRecord recordTurn(GameAction action, int pointsBefore, int drawsBefore) {
+		int playerIndex = players.indexOf(playerInTurn);
+		List<Card> drawnCards = deck.getDrawnCards(drawsBefore);
+		return (action instanceof PlayLineAction)
+				? TurnRecord.play(playerIndex, ((PlayLineAction) action).getCardsToPlay(), 
+						playerInTurn.getPoints() - pointsBefore, drawnCards)
+				: TurnRecord.pass(playerIndex, ((PassAction) action).getCardsToTrade(), drawnCards);
+	}
+	
+	/**
+	 * Returns the log of the turns played so far.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the game has not started.
+	 */
+	public GameLog getLog() {
+		checkState(log != null, "The game has not started");
+		return log;
+	}
+	
+	/**
+	 * Rebuilds the final position of a logged game, replaying and validating 
+	 * every turn.
+	 * 
+	 * @see #replay(GameLog, int, boolean)
+	 */
+	public static GameState replay(GameLog log) {
+		return replay(log, log.getNumberOfTurns(), false);
+	}
+	
+	/**
+	 * Rebuilds the position of a logged game after the given number of turns.
+	 * The game is started with the same players and the same deck as the logged
+	 * game, after which the turns are played back in order. No observers are
+	 * notified while the turns are played back; observers can be added to the
+	 * returned state.
+	 * 
+	 * @param numberOfTurns
+	 *            the number of turns to play back, from 0 to the number of turns
+	 *            in the log.
+	 * @param trustLog
+	 *            if true the turns are applied exactly as they were recorded,
+	 *            without validating the played lines or scoring them again.
+	 *            Otherwise each turn is played back as a regular action.
+	 * @throws IllegalStateException
+	 *             if the log is not trusted and a turn does not play out as it
+	 *             was recorded.
+	 */
+	public static GameState replay(GameLog log, int numberOfTurns, boolean trustLog) {
+		checkNotNull(log);
+		checkArgument(numberOfTurns >= 0 && numberOfTurns <= log.getNumberOfTurns());
+		List<Player> players = log.getPlayerNames().stream()
+				.map(Player::new)
+				.collect(toList());
+		GameState state = new GameState(players, log.createInitialDeck());
+		state.start();
+		for (int n = 0; n < numberOfTurns; ++n) {
+			TurnRecord turn = log.getTurn(n);
+			checkState(turn.getPlayerIndex() == state.players.indexOf(state.playerInTurn), 
+					"Turn %s was played out of turn", n);
+			if (trustLog) {
+				state.applyTrustedTurn(turn);
+			} else {
+				state.replayTurn(n, turn);
+			}
+		}
+		return state;
+	}
+	
+	private void replayTurn(int n, TurnRecord turn) {
+		List<Card> cards = takeCardsFromHand(turn);
+		GameAction action;
+		if (turn.getType() == TurnRecord.Type.PLAY) {
+			action = new PlayLineAction(lineItemsOf(turn, cards));
+		} else {
+			action = new PassAction(cards);
+		}
+		Result result = completeTurn(action);
+		if (!result.isSuccess()) {
+			throw new IllegalStateException("Turn " + n + " could not be replayed: " + result.getError());
+		}
+		checkState(turn.equals(log.getTurn(n)), "Turn %s did not play out as recorded: %s", n, turn);
+	}
+	
+	private void applyTrustedTurn(TurnRecord turn) {
+		List<Card> cards = takeCardsFromHand(turn);
+		if (turn.getType() == TurnRecord.Type.PLAY) {
+			grid.addTrustedLine(lineItemsOf(turn, cards));
+			cards.forEach(playerInTurn::removeCard);
+			for (int i = 0; i < turn.getNumberOfDrawnCards(); ++i) {
+				playerInTurn.giveCard(deck.next());
+			}
+			playerInTurn.completeTurn(turn.getPoints());
+		} else {
+			new PassAction(cards).invoke(playerInTurn, grid, deck);
+		}
+		log.append(turn);
+		switchPlayer();
+	}
+	
+	private static List<LineItem> lineItemsOf(TurnRecord turn, List<Card> cards) {
+		List<LineItem> items = new ArrayList<>(cards.size());
+		for (int n = 0; n < cards.size(); ++n) {
+			items.add(new LineItem(cards.get(n), Position.unpack(turn.getPosition(n))));
+		}
+		return items;
+	}
+	
+	/**
+	 * Picks the played or traded cards of a logged turn from the hand of the
+	 * player in turn. Wildcards are told apart by identity only, so any 
+	 * wildcard on the hand will do.
+	 */
+	private List<Card> takeCardsFromHand(TurnRecord turn) {
+		List<Card> hand = new ArrayList<>(playerInTurn.getCards());
+		List<Card> cards = new ArrayList<>(turn.getNumberOfCards());
+		for (int n = 0; n < turn.getNumberOfCards(); ++n) {
+			int code = turn.getCardCode(n);
+			int index = 0;
+			while (index < hand.size() && hand.get(index).code() != code) {
+				++index;
+			}
+			checkState(index < hand.size(), "%s does not have the card %s", playerInTurn.getName(), 
+					Card.fromCode(code));
+			cards.add(hand.remove(index));
+		}
+		return cards;
+	}
+	
 	public void setSelectedPlayerCard(@Nullable Card card) {
 		boolean changed = card != this.selectedPlayerCard;
 		this.selectedPlayerCard = card;
@@ -120,23 +277,13 @@ public final class GameState {
 		checkNotNull(pc);
 		checkArgument(!this.placedCards.containsKey(pc.getCard()));
 		this.placedCards.put(pc.getCard(), pc);
+		this.preview.add(pc.asLineItemForBoard());
 		int value = getValueOfCurrentlyPlacedCards();
 		this.observers.forEach(o -> o.cardWasPlacedOnBoard(pc.getCard(), pc.getPositionOnBoard(), value));
 	}
 	
 	private int getValueOfCurrentlyPlacedCards() {
-		if (placedCards.isEmpty()) {
-			return 0;
-		}
-		try {
-			Grid clone = grid.clone();
-			int value = clone.addLine(placedCards.values().stream()
-					.map(PlacedCard::asLineItemForBoard)
-					.collect(toList()));
-			return value;
-		} catch (InvalidLineException e) {
-			return 0;
-		}
+		return preview.getValue();
 	}
 
 	public boolean isPlacedCard(Card card) {
@@ -147,6 +294,7 @@ public final class GameState {
 	public void returnPlacedCard(Card card) {
 		PlacedCard pc = this.placedCards.remove(card);
 		checkArgument(pc != null, "Not a placed card");
+		this.preview.remove(pc.getPositionOnBoard());
 		pc.returnToHand();
 		int value = getValueOfCurrentlyPlacedCards();
 		this.observers.forEach(o -> o.cardWasRemovedFromBoard(card, pc.getPositionOnBoard(), value));
@@ -179,6 +327,7 @@ public final class GameState {
 		// cards to exchange.
 		setSelectedPlayerCard(null);
 		this.placedCards.clear();
+		this.preview.clear();
 		checkGameOver();
 	}
 
@@ -237,6 +386,29 @@ public final class GameState {
 		this.observers.remove(o);
 	}
 	
+	/**
+	 * Returns a 64-bit hash of the current position of the game. The hash folds
+	 * the {@link Grid#getZobristHash() Zobrist hash of the grid} together with
+	 * the cards on each player's hand, the number of cards left in the deck, and
+	 * the player in turn. The order of the cards on a hand does not affect the
+	 * hash.
+	 */
+	public long getPositionHash() {
+		long hash = grid.getZobristHash() ^
+				Zobrist.deckKey(deck.cardsLeft()) ^
+				Zobrist.turnKey(players.indexOf(getActivePlayer()));
+		for (int n = 0; n < players.size(); ++n) {
+			// The keys of a hand are added rather than XOR-ed, since a hand can
+			// hold two wildcards, which have the same code.
+			long hand = 0L;
+			for (Card c : players.get(n).getCards()) {
+				hand += Zobrist.handKey(n, c.code());
+			}
+			hash ^= hand;
+		}
+		return hash;
+	}
+	
 	public Grid getGrid() {
 		return grid;
 	}
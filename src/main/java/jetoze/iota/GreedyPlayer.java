@@ -0,0 +1,27 @@
+package jetoze.iota;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Plays the legal move that generates the most points. If there is no legal
+ * move the player passes, trading in the whole hand if there are enough cards
+ * left in the deck.
+ */
+public final class GreedyPlayer implements AutomatedPlayer {
+
+	@Override
+	public GameAction nextAction(GameState game) {
+		List<Card> hand = game.getActivePlayer().getCards();
+		Optional<LegalMove> best = game.getGrid().enumerateLegalMoves(hand)
+				.max(Comparator.comparingInt(LegalMove::getPoints));
+		if (best.isPresent()) {
+			return best.get().getAction();
+		}
+		return (game.getDeck().cardsLeft() >= hand.size())
+				? new PassAction(hand)
+				: new PassAction();
+	}
+	
+}
@@ -1,47 +1,337 @@
 package jetoze.iota;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
-import static java.util.stream.Collectors.toList;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.function.Function;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Table;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Streams;
 
 public final class Grid {
 
-	private final Table<Integer, Integer, Card> grid = HashBasedTable.create();
+	/**
+	 * Returned by {@link #evaluate(Placement)} for plays that are not valid.
+	 */
+	static final int INVALID_PLAY = -1;
+	
+	private final RunIndexStorage grid;
+	
+	/**
+	 * The cards on the grid, together with the domains of the wildcards among
+	 * them. This is the board that all lines are scanned on.
+	 */
+	private final WildcardDomains board;
+	
+	/**
+	 * The lines that have been applied, but not yet undone, most recent first.
+	 */
+	private final Deque<UndoToken> undoStack = new ArrayDeque<>();
+	
+	/**
+	 * The Zobrist hash of the cards on the grid.
+	 */
+	private long zobristHash;
+	
+	/**
+	 * The open cells of the grid, maintained as cards are placed and removed.
+	 */
+	private final Frontier frontier;
+	
+	/**
+	 * The number of times a card has been placed on or removed from the grid.
+	 */
+	private int modificationCount;
+	
+	/**
+	 * The legal cells of each card code, or null if not yet computed. Valid 
+	 * as long as the modification count is legalCellsModificationCount.
+	 */
+	private final List<ImmutableList<Position>> legalCells = new ArrayList<>(
+			Collections.nCopies(CardCode.WILDCARD + 1, null));
+	
+	private int legalCellsModificationCount = -1;
+	
+	/**
+	 * Creates a new, empty grid backed by a dense array. This is the same as 
+	 * {@link #newDenseGrid()}.
+	 */
+	public Grid() {
+		this(new DenseGridStorage());
+	}
+	
+	Grid(GridStorage grid) {
+		this(grid, zobristHashOf(grid), true);
+	}
+	
+	/**
+	 * Creates a grid with the given storage, trusting that the given hash is the
+	 * Zobrist hash of the cards in the storage.
+	 */
+	Grid(GridStorage grid, long zobristHash) {
+		this(grid, zobristHash, grid.isEmpty());
+	}
+	
+	/**
+	 * Creates a grid with the given storage, trusting that the given hash is the
+	 * Zobrist hash of the cards in the storage.
+	 * 
+	 * @param index
+	 *            whether the indexes over the cards in the storage should be
+	 *            built right away, which means visiting all cards. Otherwise
+	 *            the runs of cards are never indexed, and the occupancy 
+	 *            bitboards and wildcard domains are built by the first query
+	 *            that needs them. This is only worth skipping for grids that
+	 *            are used once.
+	 */
+	Grid(GridStorage grid, long zobristHash, boolean index) {
+		this.grid = new RunIndexStorage(new BitboardStorage(grid, index), index);
+		this.board = new WildcardDomains(this.grid, index);
+		this.zobristHash = zobristHash;
+		this.frontier = new Frontier(board);
+	}
+	
+	private Grid(Grid source) {
+		this.grid = source.grid.copy();
+		this.board = source.board.copy(this.grid);
+		this.zobristHash = source.zobristHash;
+		this.frontier = source.frontier.copy(this.board);
+	}
+	
+	/**
+	 * Returns the board that the lines of this grid are scanned on.
+	 */
+	Board board() {
+		return board;
+	}
+	
+	static long zobristHashOf(Board board) {
+		long[] hash = new long[1];
+		board.forEach((row, col, card) -> hash[0] ^= Zobrist.gridKey(row, col, card.code()));
+		return hash[0];
+	}
+	
+	/**
+	 * Creates a new, empty grid backed by a flat array over a bounding box
+	 * that grows when needed. Cloning this grid is a single array copy.
+	 */
+	public static Grid newDenseGrid() {
+		return new Grid(new DenseGridStorage());
+	}
+
+	/**
+	 * Creates a new, empty grid backed by a hash map. This grid places no 
+	 * restrictions on the extent of the board, and is cheap to create, but
+	 * more expensive to clone than a dense grid.
+	 */
+	public static Grid newHashedGrid() {
+		return new Grid(new HashGridStorage());
+	}
 	
 	public void start(Card card) {
 		checkState(grid.isEmpty());
 		checkNotNull(card);
-		grid.put(0, 0, card);
+		place(0, 0, card);
 	}
 	
 	public int getNumberOfCards() {
 		return grid.size();
 	}
 	
+	/**
+	 * Visits all cards on the grid, in no particular order.
+	 */
+	void forEachCard(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		grid.forEach(visitor);
+	}
+	
 	/**
 	 * Checks if the given card can be placed in the given position on the grid.
 	 */
 	public boolean isCardAllowed(Card card, int row, int col) {
 		checkNotNull(card);
-		NewCardEffect e = new NewCardEffect(card, new Position(row, col));
-		return e.isValid();
+		return isCardAllowed(board, card.code(), row, col);
+	}
+	
+	/**
+	 * Checks if the card with the given code can be placed in the given position 
+	 * on the given board. This does not allocate any objects.
+	 */
+	static boolean isCardAllowed(Board board, int code, int row, int col) {
+		long horizontalLine = Line.scan(board, code, row, col, Orientation.HORIZONTAL);
+		long verticalLine = Line.scan(board, code, row, col, Orientation.VERTICAL);
+		return isValidPlacement(board, code, row, col, horizontalLine, verticalLine);
+	}
+	
+	/**
+	 * Returns the open cells of the grid, i.e. the empty positions that are
+	 * adjacent to at least one card, sorted by row and then column. Each open
+	 * cell holds the cards that {@link #isCardAllowed(Card, int, int)} accepts
+	 * in that position. On an empty grid the only open cell is origo.
+	 * <p>
+	 * The open cells are maintained incrementally as lines are added, applied
+	 * and undone: only the cells whose lines pass through a changed position 
+	 * are recomputed.
+	 */
+	public List<OpenCell> getOpenCells() {
+		return frontier.getOpenCells();
+	}
+	
+	/**
+	 * Returns the open cell in the given position, if the position is open.
+	 * 
+	 * @see #getOpenCells()
+	 */
+	public Optional<OpenCell> getOpenCell(int row, int col) {
+		return Optional.ofNullable(frontier.get(row, col));
+	}
+	
+	/**
+	 * Returns the positions where the given card can be placed on its own,
+	 * sorted by row and then column. These are the positions where
+	 * {@link #isCardAllowed(Card, int, int)} returns true.
+	 * <p>
+	 * The positions are computed in one pass over the open cells of the grid,
+	 * and cached until the grid is modified.
+	 */
+	public ImmutableList<Position> legalCellsFor(Card card) {
+		checkNotNull(card);
+		return legalCellsFor(Collections.singletonList(card)).get(card);
+	}
+	
+	/**
+	 * Returns the positions where each of the given cards can be placed on its
+	 * own, for example the cards of a player's hand. The positions of all 
+	 * cards are computed in the same pass over the open cells of the grid, and
+	 * cached until the grid is modified.
+	 * 
+	 * @return a map from each card to its positions, sorted by row and then
+	 *         column. The map iterates over the cards in the given order.
+	 * @see #legalCellsFor(Card)
+	 */
+	public Map<Card, ImmutableList<Position>> legalCellsFor(List<Card> cards) {
+		checkNotNull(cards);
+		if (legalCellsModificationCount != modificationCount) {
+			Collections.fill(legalCells, null);
+			legalCellsModificationCount = modificationCount;
+		}
+		long missingCodes = 0L;
+		boolean wildcardMissing = false;
+		for (Card card : cards) {
+			if (legalCells.get(card.code()) == null) {
+				if (card.isWildcard()) {
+					wildcardMissing = true;
+				} else {
+					missingCodes |= CardSet.bitOf(card);
+				}
+			}
+		}
+		if (missingCodes != 0L || wildcardMissing) {
+			computeLegalCells(missingCodes, wildcardMissing);
+		}
+		Map<Card, ImmutableList<Position>> result = new LinkedHashMap<>();
+		for (Card card : cards) {
+			result.put(card, legalCells.get(card.code()));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+	
+	private void computeLegalCells(long codes, boolean wildcard) {
+		List<ImmutableList.Builder<Position>> builders = new ArrayList<>(legalCells.size());
+		for (int n = 0; n < legalCells.size(); ++n) {
+			builders.add(ImmutableList.builder());
+		}
+		for (OpenCell cell : getOpenCells()) {
+			for (long bits = cell.getAllowedCards().bits() & codes; bits != 0L; bits &= bits - 1) {
+				builders.get(Long.numberOfTrailingZeros(bits)).add(cell.getPosition());
+			}
+			if (wildcard && cell.isWildcardAllowed()) {
+				builders.get(CardCode.WILDCARD).add(cell.getPosition());
+			}
+		}
+		for (long bits = codes; bits != 0L; bits &= bits - 1) {
+			int code = Long.numberOfTrailingZeros(bits);
+			legalCells.set(code, builders.get(code).build());
+		}
+		if (wildcard) {
+			legalCells.set(CardCode.WILDCARD, builders.get(CardCode.WILDCARD).build());
+		}
+	}
+	
+	/**
+	 * Returns the number of times a card has been placed on or removed from
+	 * this grid. The count increases with every modification, including lines
+	 * that are applied and undone, and can be used to tell if the grid has
+	 * changed since some information was derived from it.
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+	
+	/**
+	 * Returns all distinct legal moves that can be made with the given hand,
+	 * each with the number of points it would generate. A move is a line of one
+	 * or more cards from the hand that, together with any cards between them
+	 * on the grid, forms a single contiguous line. Moves that differ only in
+	 * the order of the cards are returned once, as are moves that differ only
+	 * in which of two identical cards (e.g. two wildcards) is played. The
+	 * moves are returned in a deterministic order.
+	 * <p>
+	 * The candidate moves are validated and scored by laying them over the
+	 * grid, which means the grid is only read. The moves are generated as the
+	 * stream is consumed, a first position at a time, so a short-circuiting 
+	 * operation stops the enumeration early. The grid must not be modified
+	 * until the stream has been consumed.
+	 */
+	public Stream<LegalMove> enumerateLegalMoves(List<Card> hand) {
+		checkNotNull(hand);
+		MoveGenerator generator = new MoveGenerator(board, hand);
+		return Streams.stream(generator.generateLazily(generator.anchors(getOpenCells())));
+	}
+	
+	/**
+	 * Same as {@link #enumerateLegalMoves(List)}, but splits the work across 
+	 * the threads of the common fork-join pool. The pool is shared with e.g.
+	 * parallel streams, so callers that need the work isolated from other
+	 * users of the pool should pass a pool of their own.
+	 * 
+	 * @see #enumerateLegalMovesInParallel(List, ForkJoinPool)
+	 */
+	public Stream<LegalMove> enumerateLegalMovesInParallel(List<Card> hand) {
+		return enumerateLegalMovesInParallel(hand, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Same as {@link #enumerateLegalMoves(List)}, but splits the work by the 
+	 * first position and orientation of the moves across the threads of the 
+	 * given pool. The moves are validated and scored by laying them over this
+	 * grid, which means the grid is only read, and nothing is kept in the 
+	 * threads of the pool after the call. The moves are returned in the
+	 * same order as by {@code enumerateLegalMoves(hand)}.
+	 * <p>
+	 * This grid must not be modified by other threads while the moves are 
+	 * enumerated.
+	 */
+	public Stream<LegalMove> enumerateLegalMovesInParallel(List<Card> hand, ForkJoinPool pool) {
+		checkNotNull(hand);
+		checkNotNull(pool);
+		MoveGenerator generator = new MoveGenerator(board, hand);
+		// Bring the open cells up to date before any other thread reads them.
+		List<MoveGenerator.Anchor> anchors = generator.anchors(getOpenCells());
+		return generator.generateInParallel(anchors, pool).stream();
 	}
 	
 	/**
@@ -56,36 +346,146 @@ public final class Grid {
 	 *             if the line is not valid.
 	 */
 	public int addLine(List<LineItem> cards) throws InvalidLineException {
-		checkPreReqs(cards);
-		List<NewCardEffect> effects = new ArrayList<>();
-		List<LineItem> remainingCards = Lists.newArrayList(cards);
-		AffectedLines pointGeneratingLines = new AffectedLines();
-		while (!remainingCards.isEmpty()) {
-			Iterator<LineItem> it = remainingCards.iterator();
-			boolean cardWasAdded = false;
-			while (it.hasNext() && !cardWasAdded) {
-				LineItem card = it.next();
-				NewCardEffect e = new NewCardEffect(card);
-				if (e.isValid()) {
-					e.apply();
-					pointGeneratingLines = pointGeneratingLines.add(e.getAffectedLines());
-					effects.add(e);
-					it.remove();
-					cardWasAdded = true;
-				}
+		UndoToken token = placeLine(cards);
+		// The line is now a permanent part of the grid, which means any lines
+		// applied before it can no longer be undone.
+		undoStack.clear();
+		return token.getPoints();
+	}
+	
+	/**
+	 * Tentatively adds a new line to the grid. The returned token records the
+	 * number of points the line generated, and can be passed to
+	 * {@link #undo(UndoToken)} to take the line back. Applying and undoing a
+	 * line costs time proportional to the number of cards in the line, rather
+	 * than to the size of the grid.
+	 * <p>
+	 * Applied lines must be undone in the reverse order they were applied.
+	 * Adding a line with {@link #addLine(List)} makes the lines applied before
+	 * it permanent.
+	 * 
+	 * @throws InvalidLineException
+	 *             if the line is not valid, in which case the grid is left
+	 *             untouched.
+	 */
+	public UndoToken apply(List<LineItem> cards) throws InvalidLineException {
+		UndoToken token = placeLine(cards);
+		undoStack.push(token);
+		return token;
+	}
+	
+	/**
+	 * Takes back a line that was added with {@link #apply(List)}.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the token does not represent the line most recently
+	 *             applied to this grid.
+	 */
+	public void undo(UndoToken token) {
+		checkNotNull(token);
+		checkState(token == undoStack.peek(), "Not the most recently applied line of this grid");
+		undoStack.pop();
+		for (int n = token.positions.length - 1; n >= 0; --n) {
+			long p = token.positions[n];
+			unplace(Position.row(p), Position.col(p));
+		}
+	}
+	
+	private UndoToken placeLine(List<LineItem> cards) throws InvalidLineException {
+		Placement placement = new Placement(board);
+		if (!placement.lay(cards)) {
+			throw new InvalidLineException("Not a line of contiguous, empty positions.");
+		}
+		int points = evaluate(placement);
+		if (points == INVALID_PLAY) {
+			throw new InvalidLineException();
+		}
+		// The play is valid. Only now is the grid touched.
+		for (int n = 0; n < placement.count(); ++n) {
+			place(placement.row(n), placement.col(n), placement.card(n));
+		}
+		return new UndoToken(placement.positions(), points);
+	}
+	
+	/**
+	 * Validates a play that has been laid out over a board, and returns the
+	 * points it would generate. The lines of the play are checked once each: 
+	 * the main line, and the perpendicular line of each played card. The
+	 * underlying board is not modified.
+	 * 
+	 * @return the points, or {@link #INVALID_PLAY} if the play is not valid.
+	 */
+	static int evaluate(Placement placement) {
+		return evaluate(placement, null);
+	}
+	
+	/**
+	 * Same as {@link #evaluate(Placement)}, but looks up the perpendicular lines
+	 * of the played cards in the given cache, if any.
+	 */
+	static int evaluate(Placement placement, @Nullable CrossLineCache cache) {
+		int count = placement.count();
+		Orientation orientation = placement.orientation();
+		Orientation perpendicular = orientation.perpendicular();
+		Board base = placement.base();
+		long mainLine = Line.INVALID;
+		boolean connected = false;
+		for (int n = 0; n < count; ++n) {
+			int row = placement.row(n);
+			int col = placement.col(n);
+			int code = placement.card(n).code();
+			// The cross line of a played card contains no other played cards, so
+			// it only depends on the underlying board.
+			long crossLine = (cache != null)
+					? cache.get(code, row, col, perpendicular)
+					: scanCrossLine(base, code, row, col, perpendicular);
+			if (!Line.isValid(crossLine)) {
+				return INVALID_PLAY;
 			}
-			if (!cardWasAdded) {
-				// At least one card in the line cannot be added, i.e. the line is not valid.
-				// Rollback any changes that's been made to the grid, and throw an exception.
-				for (NewCardEffect e : effects) {
-					e.rollback();
+			if (n == 0) {
+				mainLine = Line.scan(placement, code, row, col, orientation);
+				if (!Line.isValid(mainLine) || 
+						!validateWildcards(placement, code, row, col, mainLine, crossLine, orientation)) {
+					return INVALID_PLAY;
 				}
-				throw new InvalidLineException();
+				connected = !base.isEmpty() && Line.length(mainLine) > count;
+			}
+			if (base.isEmpty()) {
+				// First card is by definition placed in origo.
+				connected |= (row == 0 && col == 0);
+			} else {
+				connected |= Line.length(crossLine) > 1;
 			}
 		}
-		int points = pointGeneratingLines.getPoints();
-		if (cards.size() == Constants.MAX_LINE_LENGTH) {
-			points *= 2;
+		if (!connected) {
+			// The play must be connected to the cards already on the grid.
+			return INVALID_PLAY;
+		}
+		return Scorer.score(placement, placement.packedPositions(), count);
+	}
+	
+	/**
+	 * Validates many plays against the current state of the grid, and returns
+	 * the points each play would generate, or -1 for plays that are not valid.
+	 * The perpendicular lines of the played cards are looked up once per
+	 * position, card and orientation, and shared between all the plays.
+	 * <p>
+	 * The grid is never modified, which makes it safe to call this method from
+	 * several threads at once, as long as no thread modifies the grid.
+	 * 
+	 * @return the points of the plays, in the iteration order of the given
+	 *         collection.
+	 */
+	public int[] validateBatch(Collection<List<LineItem>> plays) {
+		checkNotNull(plays);
+		int[] points = new int[plays.size()];
+		Placement placement = new Placement(board);
+		CrossLineCache cache = new CrossLineCache(board);
+		int n = 0;
+		for (List<LineItem> play : plays) {
+			points[n++] = placement.lay(play)
+					? evaluate(placement, cache)
+					: INVALID_PLAY;
 		}
 		return points;
 	}
@@ -105,327 +505,195 @@ public final class Grid {
 		return addLine(Arrays.asList(cards));
 	}
 
-	private static void checkPreReqs(List<LineItem> cards) throws InvalidLineException {
-		try {
-			checkArgument(cards.size() > 0 && cards.size() <= Constants.MAX_LINE_LENGTH);
-			Orientation.validatePoints(cards);
-		} catch (IllegalArgumentException e) {
-			throw new InvalidLineException(e.getMessage(), e);
+	/**
+	 * Adds a line that is known to be valid, such as a line read back from a
+	 * {@link GameLog}, without validating or scoring it. The only check is that
+	 * the positions are empty.
+	 */
+	void addTrustedLine(List<LineItem> cards) {
+		for (LineItem item : cards) {
+			Position p = item.getPosition();
+			checkState(!grid.contains(p.row, p.col), "Position already occupied: %s", p);
+			place(p.row, p.col, item.getCard());
 		}
+		undoStack.clear();
 	}
-	
-	@Nullable
-	private Line createHorizontalLine(Card newCard, Position p) {
-		Position start = findStartOfRow(p);
-		Position end = findEndOfRow(p);
-		return createLine(newCard, p, Orientation.HORIZONTAL, start, end, Position::rightOf);
-	}
-	
-	@Nullable
-	private Line createVerticalLine(Card newCard, Position p) {
-		Position start = findStartOfColumn(p);
-		Position end = findEndOfColumn(p);
-		return createLine(newCard, p, Orientation.VERTICAL, start, end, Position::below);
-	}
-	
-	@Nullable
-	private Line createLine(Card newCard,
-							Position newCardPosition,
-							Orientation orientation,
-						 	Position start, 
-						 	Position end, 
-						 	Function<Position, Position> nextGenerator) {
-		if (start.equals(end)) {
-			return Line.singleCard(newCard, newCardPosition, orientation);
+
+	private static boolean isValidPlacement(Board board, 
+											int code, 
+											int row, 
+											int col, 
+											long horizontalLine, 
+											long verticalLine) {
+		if (!Line.isValid(horizontalLine) || !Line.isValid(verticalLine)) {
+			return false;
 		}
-		List<LineItem> items = new ArrayList<>();
-		for (Position p = start; ; p = nextGenerator.apply(p)) {
-			Card card = grid.get(p.row, p.col);
-			if (card == null) {
-				card = newCard;
-			}
-			items.add(new LineItem(card, p));
-			if (p.equals(end)) {
-				break;
-			}
+		if (board.isEmpty()) {
+			// First card is by definition placed in origo.
+			assert Line.length(horizontalLine) == 1;
+			assert Line.length(verticalLine) == 1;
+			return row == 0 && col == 0;
 		}
-		MatchType matchType = deduceMatchType(items.stream()
-				.map(LineItem::getCard)
-				.collect(toList()));
-		return (matchType != null)
-				? new Line(items, orientation, matchType)
-				: null;
-	}
-	
-	@Nullable
-	private static MatchType deduceMatchType(List<Card> line) {
-		// Three different match types:
-		// SAME == All cards must share the same property. Requires at least 
-		//   two non-wildcards in the line.
-		// DIFFERENT == No two cards can share a property. Requires at least 
-		//   two non-wildcards in the line.
-		// EITHER == We don't know yet. This will be the case if the line contains
-		//   at most one concrete card.
-		if (line.size() > Constants.MAX_LINE_LENGTH) {
-			// The line is too long.
-			return null;
+		if (board.contains(row, col)) {
+			return false;
 		}
-		long numberOfConcreteCards = line.stream()
-				.filter(c -> !c.isWildcard())
-				.count();
-		if (numberOfConcreteCards <= 1) {
-			return MatchType.EITHER;
+		if (Line.length(horizontalLine) == 1 && Line.length(verticalLine) == 1) {
+			// At least one of the lines must contain more than one card.
+			// (This ensures all cards are connected in the grid.)
+			return false;
 		}
-		Set<Object> matches = null;
-		Set<Object> all = null;
-		boolean allUnique = true;
-		for (Card card : line) {
-			if (matches == null) {
-				// The first card in the line. If the first card is a WC
-				// we move on to the next one, since a WC does not have any
-				// inherent properties itself.
-				if (!card.isWildcard()) {
-					matches = card.getMatchProperties();
-					all = new HashSet<>(matches);
-				}
-			} else {
-				matches = card.match(matches);
-				if (allUnique) {
-					Set<Object> cardProperties = card.getMatchProperties();
-					int expectedSizeOfAllProperties = all.size() + cardProperties.size();
-					all.addAll(cardProperties);
-					if (all.size() < expectedSizeOfAllProperties) {
-						allUnique = false;
-					}
-				}
-				all.addAll(card.getMatchProperties());
-			}
+		return validateWildcards(board, code, row, col, horizontalLine, verticalLine, Orientation.HORIZONTAL) &&
+				validateWildcards(board, code, row, col, verticalLine, horizontalLine, Orientation.VERTICAL);
+	}
+
+	private static boolean validateWildcards(Board board,
+											 int code,
+											 int row,
+											 int col,
+											 long line,
+											 long perpendicularLine,
+											 Orientation orientation) {
+		// Wildcard validation - ensure that a wildcard that appears in two lines
+		// represent the same card in both lines. Pseudo-code:
+		// for each wc in line:
+		//   if wc also in a perpendicular line (not necessarily perpendicularLine)
+		//     collect possible cards from line
+		//     collect possible cards from the perpendicular line
+		//     look for a matching card
+		if (CardCode.isWildcard(code) && !isConsistent(line, perpendicularLine)) {
+			return false;
 		}
-		if (matches == null) {
-			// This is the case of a line consisting of wildcards only.
-			return MatchType.EITHER;
-		} else if (!matches.isEmpty()) {
-			// All the cards share a common property
-			return MatchType.SAME;
-		} else if (allUnique) {
-			// No matching property
-			return MatchType.DIFFERENT;
-		} else {
-			// No match
-			return null;
+		return validateOtherWildcards(board, row, col, line, orientation);
+	}
+	
+	/**
+	 * Same as {@link #validateWildcards(Board, int, int, int, long, long, Orientation)},
+	 * except that the card in the given position itself is not checked.
+	 */
+	private static boolean validateOtherWildcards(Board board, int row, int col, long line, Orientation orientation) {
+		int dRow = orientation.rowStep();
+		int dCol = orientation.colStep();
+		int first = -Line.offset(line);
+		int last = first + Line.length(line) - 1;
+		for (int n = first; n <= last; ++n) {
+			if (n == 0) {
+				continue;
+			}
+			int r = row + n * dRow;
+			int c = col + n * dCol;
+			// The board knows the domain of a wildcard that is already on it.
+			if (board.get(r, c).isWildcard() && 
+					(Line.candidates(line) & board.wildcardCandidates(r, c, orientation.perpendicular())) == 0L) {
+				return false;
+			}
 		}
+		// Hooray, we have a valid line!
+		return true;
 	}
 	
-	private boolean contains(Position p) {
-		return grid.contains(p.row, p.col);
+	/**
+	 * Checks if there is a card that a wildcard at the intersection of the 
+	 * two given lines could represent in both lines.
+	 */
+	private static boolean isConsistent(long line, long crossLine) {
+		if (!Line.isValid(crossLine)) {
+			return false;
+		}
+		return Line.length(crossLine) == 1 || 
+				(Line.candidates(line) & Line.candidates(crossLine)) != 0L;
 	}
 	
-	private Position findStartOfRow(Position p) {
-		return findEndpoint(p, Position::leftOf);
+	/**
+	 * Scans the line of the given orientation through the given empty position
+	 * on the given board, assuming that the card with the given code is placed
+	 * there, and validates the wildcards in it other than the card itself.
+	 * 
+	 * @return the summary of the line, or {@link Line#INVALID} if the line is
+	 *         not valid.
+	 */
+	static long scanCrossLine(Board board, int code, int row, int col, Orientation orientation) {
+		long line = Line.scan(board, code, row, col, orientation);
+		return Line.isValid(line) && validateOtherWildcards(board, row, col, line, orientation)
+				? line
+				: Line.INVALID;
 	}
 	
-	private Position findEndOfRow(Position p) {
-		return findEndpoint(p, Position::rightOf);
+	/**
+	 * Returns the domain of the wildcard in the given position, i.e. the 
+	 * concrete cards that the wildcard can represent in both its horizontal
+	 * and its vertical line. The domains are maintained incrementally as cards
+	 * join and leave the lines of the wildcards.
+	 * 
+	 * @return the domain, or an empty Optional if there is no wildcard in the
+	 *         given position.
+	 */
+	public Optional<CardSet> getWildcardDomain(int row, int col) {
+		Card card = grid.get(row, col);
+		return (card != null && card.isWildcard())
+				? Optional.of(CardSet.fromBits(board.domainOf(row, col)))
+				: Optional.empty();
 	}
 	
-	private Position findStartOfColumn(Position p) {
-		return findEndpoint(p, Position::above);
+	/**
+	 * Returns the Zobrist hash of the cards on the grid. Two grids with the same
+	 * cards in the same positions have the same hash, regardless of the order the
+	 * cards were placed in. The hash is maintained incrementally as cards are
+	 * placed and removed.
+	 */
+	public long getZobristHash() {
+		return zobristHash;
 	}
 	
-	private Position findEndOfColumn(Position p) {
-		return findEndpoint(p, Position::below);
+	private void place(int row, int col, Card card) {
+		grid.put(row, col, card);
+		zobristHash ^= Zobrist.gridKey(row, col, card.code());
+		board.cardChanged(row, col);
+		frontier.invalidateAround(row, col);
+		++modificationCount;
 	}
-
-	private Position findEndpoint(Position start, Function<Position, Position> nextPositionGenerator) {
-		Position p0 = start;
-		Position p = nextPositionGenerator.apply(p0);
-		while (contains(p)) {
-			p0 = p;
-			p = nextPositionGenerator.apply(p);
-		}
-		return p0;
+	
+	private void unplace(int row, int col) {
+		Card card = grid.get(row, col);
+		frontier.invalidateAround(row, col);
+		grid.remove(row, col);
+		board.cardChanged(row, col);
+		++modificationCount;
+		zobristHash ^= Zobrist.gridKey(row, col, card.code());
 	}
 	
 	@Override
 	public Grid clone() {
-		Grid clone = new Grid();
-		clone.grid.putAll(this.grid);
-		return clone;
+		return new Grid(this);
 	}
 	
 	
-	private class NewCardEffect {
-		
-		private final Card newCard;
-		
-		private final Position position;
-		
-		@Nullable
-		private final Line horizontalLine;
-		
-		@Nullable
-		private final Line verticalLine;
-
-		public NewCardEffect(LineItem item) {
-			this(item.getCard(), item.getPosition());
-		}
-		
-		public NewCardEffect(Card newCard, Position position) {
-			this.newCard = checkNotNull(newCard);
-			this.position = checkNotNull(position);
-			this.horizontalLine = createHorizontalLine(newCard, position);
-			this.verticalLine = createVerticalLine(newCard, position);
-		}
-
-		public boolean isValid() {
-			if ((this.horizontalLine == null) || (this.verticalLine == null)) {
-				return false;
-			}
-			if (grid.isEmpty()) {
-				// First card is by definition placed in origo.
-				assert horizontalLine.length() == 1;
-				assert verticalLine.length() == 1;
-				return position.row == 0 && position.col == 0;
-			} else {
-				if (contains(position)) {
-					return false;
-				}
-				if (horizontalLine.length() == 1 && verticalLine.length() == 1) {
-					// At least one of the lines must contain more than one card.
-					// (This ensures all cards are connected in the grid.)
-					return false;
-				}
-				return validateWildcards();
-			}
-		}
-
-		private boolean validateWildcards() {
-			// Wildcard validation - ensure that a wildcard that appears in two lines
-			// represent the same card in both lines. Pseudo-code:
-			// for each wc in this.hLine:
-			//   if wc also in a vLine (not necessarily this.vLine)
-			//     collect possible card properties from this.hLine
-			//     collect possible card properties from vLine
-			//     look for matching set of properties
-			// for each wc in this.vLine:
-			//   if wc also in an hLine (not necessarily this.hLine)
-			//     collect possible card properties from this.vLine
-			//     collect possible card properties from hLine
-			//     look for matching set of properties
-			for (LineItem wcItem : this.horizontalLine.getWildcardItems()) {
-				Line vLine = createVerticalLine(wcItem.getCard(), wcItem.getPosition());
-				if (vLine.length() == 1) {
-					continue;
-				}
-				Set<Card> hLineCandidates = this.horizontalLine.collectCandidatesForNextCard();
-				Set<Card> vLineCandidates = vLine.collectCandidatesForNextCard();
-				Set<Card> candidates = hLineCandidates;
-				candidates.retainAll(vLineCandidates);
-				if (candidates.isEmpty()) {
-					return false;
-				}
-			}
-			for (LineItem wcItem : this.verticalLine.getWildcardItems()) {
-				Line hLine = createHorizontalLine(wcItem.getCard(), wcItem.getPosition());
-				if (hLine.length() == 1) {
-					continue;
-				}
-				Set<Card> vLineCandidates = this.verticalLine.collectCandidatesForNextCard();
-				Set<Card> hLineCandidates = hLine.collectCandidatesForNextCard();
-				Set<Card> candidates = vLineCandidates;
-				candidates.retainAll(hLineCandidates);
-				if (candidates.isEmpty()) {
-					return false;
-				}
-			}
-			// Hooray, we have a valid line!
-			return true;
-		}
-		
-		public void apply() {
-			grid.put(position.row, position.col, newCard);
-		}
-		
-		public void rollback() {
-			grid.remove(position.row, position.col);
-		}
-		
-		public AffectedLines getAffectedLines() {
-			checkState(this.horizontalLine != null && this.verticalLine != null);
-			return new AffectedLines(this.horizontalLine, this.verticalLine);
-		}
-	}
-	
-	
-	private static class AffectedLines {
+	/**
+	 * Records a line that has been applied to a grid, so that it can be undone.
+	 * 
+	 * @see Grid#apply(List)
+	 * @see Grid#undo(UndoToken)
+	 */
+	public static final class UndoToken {
 		
-		private final ImmutableMultimap<Orientation, Line> lines;
+		/**
+		 * The positions of the cards, packed with {@link Position#pack(int, int)},
+		 * in the order they were placed.
+		 */
+		private final long[] positions;
 		
-		public AffectedLines() {
-			lines = ImmutableMultimap.<Orientation, Line>builder().build();
-		}
+		private final int points;
 		
-		public AffectedLines(Line horizontal, Line vertical) {
-			this(Arrays.asList(horizontal, vertical));
-		}
-		
-		public AffectedLines(List<Line> lines) {
-			ImmutableMultimap.Builder<Orientation, Line> builder = ImmutableMultimap.builder();
-			for (Line line : lines) {
-				// Do not include a card that belongs to a single-item line,
-				// since that card will be counted in the other line. For example,
-				// when adding a third card to a horizontal line, this.verticalLine
-				// will be a single-card line containing the new card.
-				// Only if a card appears in two multi-card lines should it be 
-				// counted twice.
-				if (line.length() > 1) {
-					builder.put(line.getOrientation(), line);
-				}
-			}
-			this.lines = builder.build();
+		private UndoToken(long[] positions, int points) {
+			this.positions = positions;
+			this.points = points;
 		}
 		
+		/**
+		 * Returns the number of points the line generated.
+		 */
 		public int getPoints() {
-			int base = lines.values().stream()
-					.mapToInt(Line::getFaceValue)
-					.sum();
-			long lots = lines.values().stream()
-					.filter(Line::isLot)
-					.count();
-			return (int) (base * Math.pow(2, lots));
-		}
-
-		public AffectedLines add(AffectedLines other) {
-			List<Line> horizontal = this.get(Orientation.HORIZONTAL);
-			horizontal.addAll(other.get(Orientation.HORIZONTAL));
-			removeOverlappingLines(horizontal);
-			List<Line> vertical = this.get(Orientation.VERTICAL);
-			vertical.addAll(other.get(Orientation.VERTICAL));
-			removeOverlappingLines(vertical);
-			horizontal.addAll(vertical);
-			return new AffectedLines(horizontal);
-		}
-		
-		private void removeOverlappingLines(List<Line> lines) {
-			lines.sort(Comparator.comparing(Line::length).reversed());
-			Set<Line> toRemove = new HashSet<>();
-			for (int n = 0; n < lines.size() - 1; ++n) {
-				Line longer = lines.get(n);
-				for (int m = n + 1; m < lines.size(); ++m) {
-					Line shorter = lines.get(m);
-					// No need to compare lines of equal length, because they will always be unique.
-					// This is due to the nature of the problem.
-					if (longer.length() > shorter.length() && longer.isOverlappingWith(shorter)) {
-						toRemove.add(shorter);
-					}
-				}
-			}
-			lines.removeAll(toRemove);
-		}
-		
-		private List<Line> get(Orientation o) {
-			return new ArrayList<>(this.lines.get(o));
+			return points;
 		}
 	}
-		
+
 }
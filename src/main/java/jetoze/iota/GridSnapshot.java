@@ -0,0 +1,140 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable snapshot of the cards on a grid.
+ * <p>
+ * Snapshots are persistent: adding a line to a snapshot returns a new snapshot
+ * that shares almost all of its structure with its parent, and leaves the 
+ * parent untouched. Branching many positions off the same snapshot is therefore
+ * cheap, and snapshots can be handed to other threads without locking.
+ */
+public final class GridSnapshot {
+	
+	private static final GridSnapshot EMPTY = new GridSnapshot(new PersistentGridStorage(), 0L, 0);
+
+	/**
+	 * The cards of this snapshot. This storage is never modified after the
+	 * snapshot has been created.
+	 */
+	private final PersistentGridStorage cards;
+	
+	private final long zobristHash;
+	
+	private final int points;
+	
+	private GridSnapshot(PersistentGridStorage cards, long zobristHash, int points) {
+		this.cards = cards;
+		this.zobristHash = zobristHash;
+		this.points = points;
+	}
+	
+	public static GridSnapshot empty() {
+		return EMPTY;
+	}
+	
+	/**
+	 * Creates a snapshot of the current state of the given grid.
+	 */
+	public static GridSnapshot of(Grid grid) {
+		PersistentGridStorage cards = new PersistentGridStorage();
+		grid.forEachCard(cards::put);
+		return new GridSnapshot(cards, grid.getZobristHash(), 0);
+	}
+	
+	/**
+	 * Returns a snapshot with the given card as the first card, placed in origo.
+	 */
+	public GridSnapshot start(Card card) {
+		checkState(cards.isEmpty());
+		checkNotNull(card);
+		PersistentGridStorage newCards = cards.copy();
+		Grid grid = new Grid(newCards, zobristHash);
+		grid.start(card);
+		return new GridSnapshot(newCards, grid.getZobristHash(), 0);
+	}
+	
+	/**
+	 * Returns a new snapshot with the given line added to the cards of this
+	 * snapshot. This snapshot is not affected.
+	 * 
+	 * @throws InvalidLineException
+	 *             if the line is not valid.
+	 * @see Grid#addLine(List)
+	 */
+	public GridSnapshot addLine(List<LineItem> items) throws InvalidLineException {
+		PersistentGridStorage newCards = cards.copy();
+		Grid grid = new Grid(newCards, zobristHash);
+		int newPoints = grid.addLine(items);
+		return new GridSnapshot(newCards, grid.getZobristHash(), newPoints);
+	}
+	
+	/**
+	 * Returns a new snapshot with the given line added to the cards of this
+	 * snapshot. This snapshot is not affected.
+	 * 
+	 * @throws InvalidLineException
+	 *             if the line is not valid.
+	 * @see Grid#addLine(List)
+	 */
+	public GridSnapshot addLine(LineItem... items) throws InvalidLineException {
+		return addLine(Arrays.asList(items));
+	}
+	
+	/**
+	 * Returns the number of points generated by the line that was added to the
+	 * parent snapshot to create this snapshot, or 0 if this snapshot was not
+	 * created by adding a line.
+	 */
+	public int getPoints() {
+		return points;
+	}
+	
+	/**
+	 * Checks if the given card can be placed in the given position.
+	 */
+	public boolean isCardAllowed(Card card, int row, int col) {
+		checkNotNull(card);
+		return Grid.isCardAllowed(cards, card.code(), row, col);
+	}
+	
+	/**
+	 * Returns the card in the given position, or {@code null} if the position
+	 * is empty.
+	 */
+	@Nullable
+	public Card getCard(int row, int col) {
+		return cards.get(row, col);
+	}
+	
+	/**
+	 * Returns the Zobrist hash of the cards in this snapshot. This is the same
+	 * hash as a {@link Grid} with the same cards would have.
+	 * 
+	 * @see Grid#getZobristHash()
+	 */
+	public long getZobristHash() {
+		return zobristHash;
+	}
+	
+	public int getNumberOfCards() {
+		return cards.size();
+	}
+	
+	/**
+	 * Returns a new, mutable Grid with the cards of this snapshot.
+	 */
+	public Grid toGrid() {
+		DenseGridStorage storage = new DenseGridStorage();
+		cards.forEach(storage::put);
+		return new Grid(storage, zobristHash, true);
+	}
+	
+}
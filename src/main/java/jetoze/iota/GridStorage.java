@@ -0,0 +1,17 @@
+package jetoze.iota;
+
+/**
+ * The storage of the cards on a {@link Grid}.
+ */
+interface GridStorage extends Board {
+
+	void put(int row, int col, Card card);
+
+	void remove(int row, int col);
+
+	/**
+	 * Returns an independent copy of this storage.
+	 */
+	GridStorage copy();
+
+}
@@ -0,0 +1,54 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Grid storage backed by a {@link CoordinateMap}. There are no restrictions on
+ * the extent of the board.
+ */
+final class HashGridStorage implements GridStorage {
+
+	private final CoordinateMap<Card> cards;
+
+	public HashGridStorage() {
+		this(new CoordinateMap<>());
+	}
+
+	private HashGridStorage(CoordinateMap<Card> cards) {
+		this.cards = checkNotNull(cards);
+	}
+
+	@Override
+	@Nullable
+	public Card get(int row, int col) {
+		return cards.get(row, col);
+	}
+
+	@Override
+	public void put(int row, int col, Card card) {
+		cards.put(row, col, card);
+	}
+
+	@Override
+	public void remove(int row, int col) {
+		cards.remove(row, col);
+	}
+
+	@Override
+	public int size() {
+		return cards.size();
+	}
+
+	@Override
+	public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		cards.forEach(visitor);
+	}
+
+	@Override
+	public HashGridStorage copy() {
+		return new HashGridStorage(cards.copy());
+	}
+
+}
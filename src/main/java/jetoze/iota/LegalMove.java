@@ -0,0 +1,51 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A line of cards from a player's hand that can legally be added to a grid,
+ * together with the number of points it would generate.
+ * 
+ * @see Grid#enumerateLegalMoves(List)
+ */
+public final class LegalMove {
+
+	private final ImmutableList<LineItem> items;
+	
+	private final int points;
+	
+	LegalMove(List<LineItem> items, int points) {
+		checkArgument(!items.isEmpty());
+		checkArgument(points >= 0);
+		this.items = ImmutableList.copyOf(items);
+		this.points = points;
+	}
+	
+	/**
+	 * Returns the cards to play, in the order they appear in the line.
+	 */
+	public ImmutableList<LineItem> getItems() {
+		return items;
+	}
+	
+	public int getPoints() {
+		return points;
+	}
+	
+	/**
+	 * Returns the action that plays this move.
+	 */
+	public PlayLineAction getAction() {
+		return new PlayLineAction(items);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s (%d points)", items, points);
+	}
+	
+}
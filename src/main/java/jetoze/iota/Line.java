@@ -1,119 +1,159 @@
 package jetoze.iota;
 
-import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toSet;
+import javax.annotation.Nullable;
 
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+/**
+ * Static helpers for scanning the lines of a board without creating any
+ * intermediate objects.
+ * <p>
+ * A line is described by a summary packed into a single long:
+ * <ul>
+ * <li>bits 0-11: the AND of the property masks of the concrete cards</li>
+ * <li>bits 12-23: the OR of the property masks of the concrete cards</li>
+ * <li>bits 24-26: the number of concrete cards</li>
+ * <li>bits 27-29: the length of the line</li>
+ * <li>bits 30-34: the sum of the face values of the cards</li>
+ * <li>bits 35-37: the number of cards before the scanned position</li>
+ * <li>bits 38-39: the ordinal of the {@link MatchType}</li>
+ * </ul>
+ * A line that is not valid is represented by {@link #INVALID}.
+ */
+final class Line {
 
-import com.google.common.collect.ImmutableList;
+	/**
+	 * The summary of a line that is not valid.
+	 */
+	static final long INVALID = -1L;
 
-final class Line {
-	
-	private final ImmutableList<LineItem> items;
+	private static final int COMMON_PROPERTIES_SHIFT = 0;
+
+	private static final int ALL_PROPERTIES_SHIFT = 12;
+
+	private static final int CONCRETE_CARDS_SHIFT = 24;
+
+	private static final int LENGTH_SHIFT = 27;
+
+	private static final int FACE_VALUE_SHIFT = 30;
+
+	private static final int OFFSET_SHIFT = 35;
+
+	private static final int MATCH_TYPE_SHIFT = 38;
+
+	private static final MatchType[] MATCH_TYPES = MatchType.values();
 
-	private final Orientation orientation;
-	
-	private final MatchType matchType;
-	
 	/**
-	 * Creates a line of the given cards and positions, orientation, and match
-	 * type.
-	 * <p>
-	 * While it may seem superfluous to specify the orientation - which could be
-	 * deduced from the positions of the items if there are two or more items -
-	 * we must also assign an specific orientation in the general case, which
-	 * includes a single-card line which does not have an inherent orientation.
+	 * Scans the line of the given orientation that passes through the given
+	 * position, assuming that the card with the given code is placed in that
+	 * position. The position itself may or may not be occupied on the board.
+	 *
+	 * @return the summary of the line, or {@link #INVALID} if the line is too
+	 *         long or the cards do not match.
 	 */
-	public Line(List<LineItem> items, Orientation orientation, MatchType matchType) {
-		this.items = ImmutableList.copyOf(items);
-		this.orientation = checkNotNull(orientation);
-		this.matchType = checkNotNull(matchType);
+	static long scan(Board board, int code, int row, int col, Orientation orientation) {
+		int dRow = orientation.rowStep();
+		int dCol = orientation.colStep();
+		int before = distanceToEnd(board, row, col, -dRow, -dCol);
+		int after = distanceToEnd(board, row, col, dRow, dCol);
+		int length = before + after + 1;
+		if (length > Constants.MAX_LINE_LENGTH) {
+			return INVALID;
+		}
+		int commonProperties = CardCode.ALL_PROPERTIES;
+		int allProperties = 0;
+		int numberOfConcreteCards = 0;
+		int faceValue = 0;
+		for (int n = -before; n <= after; ++n) {
+			int c = (n == 0)
+					? code
+					: board.get(row + n * dRow, col + n * dCol).code();
+			if (!CardCode.isWildcard(c)) {
+				int mask = CardCode.propertyMask(c);
+				commonProperties &= mask;
+				allProperties |= mask;
+				++numberOfConcreteCards;
+				faceValue += CardCode.faceValue(c);
+			}
+		}
+		MatchType matchType = MatchType.deduce(length, numberOfConcreteCards, commonProperties, allProperties);
+		if (matchType == null) {
+			return INVALID;
+		}
+		return ((long) commonProperties << COMMON_PROPERTIES_SHIFT) |
+				((long) allProperties << ALL_PROPERTIES_SHIFT) |
+				((long) numberOfConcreteCards << CONCRETE_CARDS_SHIFT) |
+				((long) length << LENGTH_SHIFT) |
+				((long) faceValue << FACE_VALUE_SHIFT) |
+				((long) before << OFFSET_SHIFT) |
+				((long) matchType.ordinal() << MATCH_TYPE_SHIFT);
 	}
-	
+
 	/**
-	 * Creates a line of a single card.
+	 * Returns the number of consecutive occupied positions on the board,
+	 * starting with the neighbor of the given position in the given direction.
+	 * The walk stops after {@code MAX_LINE_LENGTH} positions, since any line
+	 * longer than that is invalid anyway.
 	 * 
-	 * @param card
-	 *            the card
-	 * @param pos
-	 *            the position of the card
-	 * @param orientation
-	 *            the orientation of the line. This may seem arbitrary for a
-	 *            single-line card, but we need a specific orientation in order
-	 *            to implement the {@link #isOverlappingWith(Line)} method
-	 *            correctly, which in turn is needed (at the moment) for
-	 *            generating the correct point total when adding a new line to
-	 *            the grid.
+	 * @see Board#distanceToEnd(int, int, int, int)
 	 */
-	public static Line singleCard(Card card, Position pos, Orientation orientation) {
-		return new Line(ImmutableList.of(new LineItem(card, pos)), orientation, 
-				MatchType.EITHER);
+	static int distanceToEnd(Board board, int row, int col, int dRow, int dCol) {
+		return board.distanceToEnd(row, col, dRow, dCol);
+	}
+
+	static boolean isValid(long line) {
+		return line != INVALID;
+	}
+
+	static int length(long line) {
+		return field(line, LENGTH_SHIFT, 0x7);
 	}
-	
-	public int length() {
-		return items.size();
+
+	static boolean isLot(long line) {
+		return length(line) == Constants.MAX_LINE_LENGTH;
 	}
-	
-	public boolean isLot() {
-		return length() == Constants.MAX_LINE_LENGTH;
+
+	static int faceValue(long line) {
+		return field(line, FACE_VALUE_SHIFT, 0x1F);
 	}
-	
-	public Orientation getOrientation() {
-		return orientation;
+
+	/**
+	 * Returns the number of cards in the line that come before the position
+	 * the line was scanned from.
+	 */
+	static int offset(long line) {
+		return field(line, OFFSET_SHIFT, 0x7);
 	}
-	
-	public List<Card> getCards() {
-		return items.stream()
-				.map(LineItem::getCard)
-				.collect(Collectors.toList());
+
+	static int numberOfConcreteCards(long line) {
+		return field(line, CONCRETE_CARDS_SHIFT, 0x7);
 	}
-	
-	public int getFaceValue() {
-		return items.stream()
-				.mapToInt(LineItem::getFaceValue)
-				.sum();
+
+	static int commonProperties(long line) {
+		return field(line, COMMON_PROPERTIES_SHIFT, CardCode.ALL_PROPERTIES);
 	}
-	
-	public List<LineItem> getWildcardItems() {
-		return items.stream()
-				.filter(i -> i.getCard().isWildcard())
-				.collect(Collectors.toList());
+
+	static int allProperties(long line) {
+		return field(line, ALL_PROPERTIES_SHIFT, CardCode.ALL_PROPERTIES);
 	}
-	
-	public Set<Card> collectCandidatesForNextCard() {
-		List<Card> cards = getCards();
-		return matchType.collectCandidatesForNextCard(cards);
+
+	@Nullable
+	static MatchType matchType(long line) {
+		return isValid(line)
+				? MATCH_TYPES[field(line, MATCH_TYPE_SHIFT, 0x3)]
+				: null;
 	}
-	
-	public boolean isOverlappingWith(Line other) {
-		if (this == other) {
-			return true;
-		}
-		if (this.orientation != other.orientation) {
-			return false;
-		}
-		Line shorter = (this.length() < other.length())
-				? this
-				: other;
-		Line longer = (shorter == this)
-				? other
-				: this;
-		Set<Position> pointsInLongerLine = longer.items.stream()
-				.map(LineItem::getPosition)
-				.collect(toSet());
-		return shorter.items.stream()
-				.map(LineItem::getPosition)
-				.allMatch(pointsInLongerLine::contains);
+
+	/**
+	 * Returns the bits of the {@link CardSet} of possible cards that can be
+	 * added as the next card to the line.
+	 */
+	static long candidates(long line) {
+		return matchType(line).candidates(commonProperties(line), allProperties(line));
 	}
-	
-	@Override
-	public String toString() {
-		return items.stream()
-				.map(LineItem::toString)
-				.collect(joining(" - ", "<|", "|>"));
+
+	private static int field(long line, int shift, int mask) {
+		return (int) (line >>> shift) & mask;
 	}
-	
-}
\ No newline at end of file
+
+	private Line() {/**/}
+
+}
@@ -2,8 +2,6 @@ package jetoze.iota;
 
 import static com.google.common.base.Preconditions.*;
 
-import java.util.Objects;
-
 import javax.annotation.Nullable;
 
 public final class LineItem {
@@ -52,6 +50,6 @@ public final class LineItem {
 	
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.card, this.position);
+		return 31 * card.hashCode() + position.hashCode();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of a series of games played by a {@link MatchRunner}: how many
+ * games each player won, how fast the games were played, and how long the 
+ * turns took.
+ */
+public final class MatchReport {
+
+	private final int numberOfGames;
+	
+	private final long elapsedNanos;
+	
+	/**
+	 * The duration of every turn of every game, in nanoseconds, sorted.
+	 */
+	private final long[] turnLatencies;
+	
+	private final int[] wins;
+	
+	private final int ties;
+	
+	private final int stalemates;
+	
+	MatchReport(int numberOfGames, long elapsedNanos, long[] turnLatencies, int[] wins, int ties, int stalemates) {
+		this.numberOfGames = numberOfGames;
+		this.elapsedNanos = elapsedNanos;
+		this.turnLatencies = turnLatencies;
+		Arrays.sort(this.turnLatencies);
+		this.wins = wins;
+		this.ties = ties;
+		this.stalemates = stalemates;
+	}
+	
+	public int getNumberOfGames() {
+		return numberOfGames;
+	}
+	
+	public long getNumberOfTurns() {
+		return turnLatencies.length;
+	}
+	
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	public double getGamesPerSecond() {
+		return perSecond(numberOfGames);
+	}
+	
+	public double getTurnsPerSecond() {
+		return perSecond(turnLatencies.length);
+	}
+	
+	private double perSecond(long count) {
+		return (elapsedNanos > 0L)
+				? count * 1e9 / elapsedNanos
+				: 0.0;
+	}
+	
+	/**
+	 * Returns the given percentile of the turn latencies, in nanoseconds. The
+	 * latency of a turn is the time it took the player to decide on an action,
+	 * plus the time it took the game to complete the turn.
+	 * 
+	 * @param percentile
+	 *            the percentile, from 0 to 100.
+	 */
+	public long getTurnLatencyPercentile(double percentile) {
+		checkArgument(percentile >= 0.0 && percentile <= 100.0);
+		if (turnLatencies.length == 0) {
+			return 0L;
+		}
+		int index = (int) Math.ceil(percentile / 100.0 * turnLatencies.length) - 1;
+		return turnLatencies[Math.max(0, index)];
+	}
+	
+	/**
+	 * Returns the number of games won by the player with the given index.
+	 */
+	public int getWins(int player) {
+		return wins[player];
+	}
+	
+	/**
+	 * Returns the number of games that ended in a tie.
+	 */
+	public int getTies() {
+		return ties;
+	}
+	
+	/**
+	 * Returns the number of games that were abandoned because no player could 
+	 * make any progress.
+	 */
+	public int getStalemates() {
+		return stalemates;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d games, %d turns in %.2f s%n", numberOfGames, turnLatencies.length, elapsedNanos / 1e9));
+		sb.append(String.format("%.1f games/s, %.1f turns/s%n", getGamesPerSecond(), getTurnsPerSecond()));
+		sb.append(String.format("Turn latency: p50 %.1f us, p90 %.1f us, p99 %.1f us%n", 
+				getTurnLatencyPercentile(50) / 1e3, getTurnLatencyPercentile(90) / 1e3, getTurnLatencyPercentile(99) / 1e3));
+		for (int n = 0; n < wins.length; ++n) {
+			sb.append(String.format("Player %d: %d wins%n", n + 1, wins[n]));
+		}
+		sb.append(String.format("Ties: %d, stalemates: %d", ties, stalemates));
+		return sb.toString();
+	}
+	
+}
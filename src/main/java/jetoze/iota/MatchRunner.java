@@ -0,0 +1,204 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Plays complete games between automated players, without any UI, as fast as
+ * possible. This is used for load testing the game engine.
+ * <p>
+ * The games are spread over a pool of worker threads, each of which plays one
+ * game at a time. The turns are completed directly with 
+ * {@link GameState#completeTurn(GameAction)}, on game states that have no 
+ * observers. Game <i>n</i> is dealt from a deck shuffled with the seed 
+ * {@code seed + n}, which means the outcome of each game is the same from run
+ * to run, regardless of the number of threads.
+ */
+public final class MatchRunner {
+
+	/**
+	 * A game is abandoned as a stalemate when this many turns in a row have 
+	 * been passes for every player.
+	 */
+	private static final int PASSES_PER_PLAYER_BEFORE_STALEMATE = 2;
+	
+	private final ImmutableList<AutomatedPlayer> players;
+	
+	public MatchRunner(List<? extends AutomatedPlayer> players) {
+		checkArgument(players.size() >= 2 && players.size() <= Constants.MAX_NUMBER_OF_PLAYERS);
+		this.players = ImmutableList.copyOf(players);
+	}
+	
+	/**
+	 * Plays the given number of games on a pool of worker threads.
+	 * 
+	 * @param seed
+	 *            the seed of the deck of the first game.
+	 * @param numberOfThreads
+	 *            the number of worker threads.
+	 */
+	public MatchReport run(int numberOfGames, long seed, int numberOfThreads) throws InterruptedException {
+		checkArgument(numberOfThreads > 0);
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			return run(numberOfGames, seed, executor, numberOfThreads);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Plays the given number of games with the given number of workers, 
+	 * submitted to the given executor.
+	 */
+	public MatchReport run(int numberOfGames, long seed, ExecutorService executor, int numberOfWorkers) 
+			throws InterruptedException {
+		checkArgument(numberOfGames >= 0);
+		checkNotNull(executor);
+		checkArgument(numberOfWorkers > 0);
+		AtomicInteger nextGame = new AtomicInteger();
+		long start = System.nanoTime();
+		List<Future<Worker>> futures = new ArrayList<>();
+		for (int n = 0; n < numberOfWorkers; ++n) {
+			futures.add(executor.submit(new Worker(nextGame, numberOfGames, seed)));
+		}
+		Worker total = new Worker(nextGame, numberOfGames, seed);
+		try {
+			for (Future<Worker> f : futures) {
+				total.add(f.get());
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A game failed", e.getCause());
+		} finally {
+			// Stop any workers still running, e.g. if this thread was interrupted.
+			// This is a no-op for workers that have completed.
+			futures.forEach(f -> f.cancel(true));
+		}
+		long elapsed = System.nanoTime() - start;
+		return new MatchReport(numberOfGames, elapsed, Arrays.copyOf(total.latencies, total.numberOfTurns), 
+				total.wins, total.ties, total.stalemates);
+	}
+	
+	/**
+	 * Plays games until there are no more games to play, and collects their
+	 * outcomes.
+	 */
+	private final class Worker implements Callable<Worker> {
+		
+		private final AtomicInteger nextGame;
+		
+		private final int numberOfGames;
+		
+		private final long seed;
+		
+		private long[] latencies = new long[1024];
+		
+		private int numberOfTurns;
+		
+		private final int[] wins = new int[players.size()];
+		
+		private int ties;
+		
+		private int stalemates;
+		
+		Worker(AtomicInteger nextGame, int numberOfGames, long seed) {
+			this.nextGame = nextGame;
+			this.numberOfGames = numberOfGames;
+			this.seed = seed;
+		}
+		
+		@Override
+		public Worker call() {
+			for (int n = nextGame.getAndIncrement(); n < numberOfGames; n = nextGame.getAndIncrement()) {
+				if (Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				play(new Random(seed + n));
+			}
+			return this;
+		}
+		
+		private void play(Random random) {
+			List<Player> gamePlayers = new ArrayList<>();
+			for (int n = 0; n < players.size(); ++n) {
+				gamePlayers.add(new Player("Player " + (n + 1)));
+			}
+			GameState game = new GameState(gamePlayers, Deck.newShuffledDeck(random));
+			game.start();
+			int maxPassesInARow = PASSES_PER_PLAYER_BEFORE_STALEMATE * players.size();
+			int passesInARow = 0;
+			while (!game.isGameOver()) {
+				if (passesInARow == maxPassesInARow) {
+					++stalemates;
+					return;
+				}
+				long turnStart = System.nanoTime();
+				AutomatedPlayer player = players.get(gamePlayers.indexOf(game.getActivePlayer()));
+				GameAction action = player.nextAction(game);
+				GameAction.Result result = game.completeTurn(action);
+				recordLatency(System.nanoTime() - turnStart);
+				if (!result.isSuccess()) {
+					throw new IllegalStateException("Invalid action: " + result.getError());
+				}
+				passesInARow = (action instanceof PassAction)
+						? passesInARow + 1
+						: 0;
+			}
+			Player winner = game.getWinningPlayer().orElse(null);
+			if (winner != null) {
+				++wins[gamePlayers.indexOf(winner)];
+			} else {
+				++ties;
+			}
+		}
+		
+		private void recordLatency(long nanos) {
+			if (numberOfTurns == latencies.length) {
+				latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+			}
+			latencies[numberOfTurns++] = nanos;
+		}
+		
+		void add(Worker other) {
+			for (int n = 0; n < other.numberOfTurns; ++n) {
+				recordLatency(other.latencies[n]);
+			}
+			for (int n = 0; n < wins.length; ++n) {
+				wins[n] += other.wins[n];
+			}
+			ties += other.ties;
+			stalemates += other.stalemates;
+		}
+	}
+	
+	/**
+	 * Plays a series of games between greedy players, and prints the report.
+	 * The arguments are the number of games, the number of players, and the
+	 * number of threads, all optional.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int numberOfGames = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int numberOfPlayers = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+		int numberOfThreads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		List<AutomatedPlayer> players = new ArrayList<>();
+		for (int n = 0; n < numberOfPlayers; ++n) {
+			players.add(new GreedyPlayer());
+		}
+		MatchReport report = new MatchRunner(players).run(numberOfGames, System.nanoTime(), numberOfThreads);
+		System.out.println(report);
+	}
+	
+}
@@ -1,65 +1,107 @@
 package jetoze.iota;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+
+import javax.annotation.Nullable;
 
 enum MatchType {
 
 	SAME {
 
 		@Override
-		public Set<Card> collectCandidatesForNextCard(List<Card> line) {
-			// The following could be rewritten using Stream.reduce, but the
-			// resulting code is not any prettier.
-			Set<Object> commonProperties = null;
-			for (Card c : line) {
-				if (c.isWildcard()) {
-					continue;
-				}
-				if (commonProperties == null) {
-					commonProperties = c.getMatchProperties();
-				} else {
-					commonProperties = c.match(commonProperties);
-				}
-			}
-			Set<Card> candidates = new HashSet<>();
-			for (Object p : commonProperties) {
-				Set<Object> allProps = Constants.collectAllCardProperties();
-				allProps.removeIf(o -> o != p && p.getClass().isInstance(o));
-				candidates.addAll(Card.createPossibleCards(allProps));
-			}
-			return candidates;
+		long candidates(int commonProperties, int allProperties) {
+			// The next card must share at least one of the properties that all
+			// existing cards have in common.
+			return CardSet.cardsWithAnyProperty(commonProperties);
 		}
 	},
-	
+
 	DIFFERENT {
 
 		@Override
-		public Set<Card> collectCandidatesForNextCard(List<Card> line) {
-			Set<Object> props = Constants.collectAllCardProperties();
-			line.stream().filter(c -> !c.isWildcard()).forEach(c -> {
-				props.removeAll(c.getMatchProperties());
-			});
-			return Card.createPossibleCards(props);
+		long candidates(int commonProperties, int allProperties) {
+			// The next card cannot share any property with the existing cards.
+			return ~CardSet.cardsWithAnyProperty(allProperties);
 		}
 	},
-	
+
 	EITHER {
 
 		@Override
-		public Set<Card> collectCandidatesForNextCard(List<Card> line) {
+		long candidates(int commonProperties, int allProperties) {
 			// A line with at most one concrete card. All card properties are possible.
-			Set<Object> props = Constants.collectAllCardProperties();
-			return Card.createPossibleCards(props);
+			return CardSet.allCards().bits();
 		}
 
 	};
-	
+
 	/**
-	 * Given an existing line of cards, returns the possible Cards that can 
+	 * Given an existing line of cards, returns the possible Cards that can
 	 * be added as the next card to the line.
 	 */
-	public abstract Set<Card> collectCandidatesForNextCard(List<Card> line);
-	
-}
\ No newline at end of file
+	public CardSet collectCandidatesForNextCard(List<Card> line) {
+		int commonProperties = CardCode.ALL_PROPERTIES;
+		int allProperties = 0;
+		for (Card c : line) {
+			if (!c.isWildcard()) {
+				int mask = CardCode.propertyMask(c.code());
+				commonProperties &= mask;
+				allProperties |= mask;
+			}
+		}
+		return CardSet.fromBits(candidates(commonProperties, allProperties));
+	}
+
+	/**
+	 * Returns the bits of the {@link CardSet} of possible Cards that can be added
+	 * as the next card to a line of this match type.
+	 *
+	 * @param commonProperties
+	 *            the AND of the property masks of the concrete cards in the line
+	 * @param allProperties
+	 *            the OR of the property masks of the concrete cards in the line
+	 */
+	abstract long candidates(int commonProperties, int allProperties);
+
+	/**
+	 * Deduces the match type of a line from the property masks of its cards.
+	 *
+	 * @param length
+	 *            the number of cards in the line, including wildcards
+	 * @param numberOfConcreteCards
+	 *            the number of non-wildcards in the line
+	 * @param commonProperties
+	 *            the AND of the property masks of the concrete cards in the line
+	 * @param allProperties
+	 *            the OR of the property masks of the concrete cards in the line
+	 * @return the match type, or {@code null} if the cards do not form a valid
+	 *         line
+	 */
+	@Nullable
+	static MatchType deduce(int length, int numberOfConcreteCards, int commonProperties, int allProperties) {
+		// Three different match types:
+		// SAME == All cards must share the same property. Requires at least
+		//   two non-wildcards in the line.
+		// DIFFERENT == No two cards can share a property. Requires at least
+		//   two non-wildcards in the line.
+		// EITHER == We don't know yet. This will be the case if the line contains
+		//   at most one concrete card.
+		if (length > Constants.MAX_LINE_LENGTH) {
+			// The line is too long.
+			return null;
+		}
+		if (numberOfConcreteCards <= 1) {
+			return EITHER;
+		}
+		if (commonProperties != 0) {
+			// All the cards share a common property
+			return SAME;
+		}
+		// Each concrete card contributes three properties. If none of them
+		// overlap the cards are all unique.
+		return (Integer.bitCount(allProperties) == 3 * numberOfConcreteCards)
+				? DIFFERENT
+				: null;
+	}
+
+}
@@ -0,0 +1,434 @@
+package jetoze.iota;
+
+import static java.util.Comparator.comparingInt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Enumerates the legal moves of a hand of cards on a grid.
+ * <p>
+ * A move is a set of cards placed in empty positions of a single row or
+ * column, such that the new cards and the cards between them form one
+ * contiguous line. Every such set of positions is identified by its first
+ * position, its orientation and the number of cards in it, so each placement
+ * is generated exactly once, regardless of the order of the cards in the hand.
+ * <p>
+ * The work is split into {@link Anchor anchors}, one for each possible first
+ * position and orientation. The anchors can be processed independently of each
+ * other.
+ */
+final class MoveGenerator {
+
+	private final Board board;
+	
+	private final ImmutableList<Card> hand;
+	
+	private final int[] codes;
+	
+	public MoveGenerator(Board board, List<Card> hand) {
+		this.board = board;
+		this.hand = ImmutableList.copyOf(hand);
+		this.codes = new int[this.hand.size()];
+		for (int n = 0; n < codes.length; ++n) {
+			codes[n] = this.hand.get(n).code();
+		}
+	}
+	
+	/**
+	 * Returns the anchors to generate moves from, in a deterministic order.
+	 * 
+	 * @param openCells
+	 *            the open cells of the board.
+	 */
+	public List<Anchor> anchors(List<OpenCell> openCells) {
+		if (hand.isEmpty()) {
+			return Collections.emptyList();
+		}
+		// Every move covers at least one open cell, and the first position of
+		// the move can be at most MAX_LINE_LENGTH - 1 steps before it.
+		TreeSet<Anchor> anchors = new TreeSet<>(comparingInt((Anchor a) -> a.orientation.ordinal())
+				.thenComparingInt(a -> a.row)
+				.thenComparingInt(a -> a.col));
+		for (OpenCell cell : openCells) {
+			for (Orientation o : Orientation.values()) {
+				for (int d = 0; d < Constants.MAX_LINE_LENGTH; ++d) {
+					int row = cell.getPosition().row - d * o.rowStep();
+					int col = cell.getPosition().col - d * o.colStep();
+					if (!board.contains(row, col)) {
+						Anchor anchor = new Anchor(o, row, col, (d == 0) ? cell : null);
+						if (!anchors.add(anchor) && d == 0) {
+							// The anchor was added earlier, for a cell further 
+							// along the line, without the open cell that the
+							// single card moves are generated from. Replace it.
+							anchors.remove(anchor);
+							anchors.add(anchor);
+						}
+					}
+				}
+			}
+		}
+		return new ArrayList<>(anchors);
+	}
+	
+	/**
+	 * Generates the legal moves that start in the given anchor, and adds them
+	 * to the given list in a deterministic order.
+	 * 
+	 * @param evaluator
+	 *            validates and scores the final candidates.
+	 */
+	public void generate(Anchor anchor, Evaluator evaluator, List<LegalMove> moves) {
+		int maxNumberOfCards = Math.min(hand.size(), Constants.MAX_LINE_LENGTH);
+		for (int k = 1; k <= maxNumberOfCards; ++k) {
+			if (k == 1) {
+				// A single card is the same move in both orientations.
+				if (anchor.orientation == Orientation.HORIZONTAL && anchor.openCell != null) {
+					generateSingleCardMoves(anchor.openCell, evaluator, moves);
+				}
+			} else if (!new Window(anchor, k).generate(evaluator, moves)) {
+				// The line is too long, and will not get any shorter with more cards.
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the legal moves of the given anchors, in order. The moves are 
+	 * generated as the iterator reaches them, one anchor at a time, so only 
+	 * the moves of the current anchor are held in memory. The board must not 
+	 * be modified while the iterator is in use.
+	 */
+	public Iterator<LegalMove> generateLazily(List<Anchor> anchors) {
+		return new AbstractIterator<LegalMove>() {
+			
+			private final Iterator<Anchor> remaining = anchors.iterator();
+			
+			private final Evaluator evaluator = new Evaluator();
+			
+			/**
+			 * The moves of the current anchor.
+			 */
+			private final List<LegalMove> moves = new ArrayList<>();
+			
+			private int next;
+			
+			@Override
+			protected LegalMove computeNext() {
+				while (next == moves.size()) {
+					if (!remaining.hasNext()) {
+						return endOfData();
+					}
+					moves.clear();
+					next = 0;
+					generate(remaining.next(), evaluator, moves);
+				}
+				return moves.get(next++);
+			}
+		};
+	}
+	
+	/**
+	 * Generates the legal moves of the given anchors in parallel, in the given
+	 * pool. The anchors are split recursively into halves, and the moves of each
+	 * half are concatenated in order, so the result is the same as if the
+	 * anchors were processed one by one. Each task that is not split further
+	 * uses an evaluator of its own, so no state is left behind in the threads
+	 * of the pool.
+	 */
+	public List<LegalMove> generateInParallel(List<Anchor> anchors, ForkJoinPool pool) {
+		return pool.invoke(new GenerateTask(anchors, 0, anchors.size()));
+	}
+	
+	private void generateSingleCardMoves(OpenCell cell, Evaluator evaluator, List<LegalMove> moves) {
+		// The open cell knows exactly which cards are allowed on their own.
+		for (int h = 0; h < codes.length; ++h) {
+			Card card = hand.get(h);
+			if (cell.isAllowed(card) && !isDuplicate(h)) {
+				evaluator.score(ImmutableList.of(new LineItem(card, cell.getPosition())), moves);
+			}
+		}
+	}
+	
+	/**
+	 * Checks if the card at the given index in the hand has the same code as
+	 * a card earlier in the hand, in which case it generates the same moves.
+	 */
+	private boolean isDuplicate(int index) {
+		for (int n = 0; n < index; ++n) {
+			if (codes[n] == codes[index]) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Validates and scores candidate moves by laying them over the board, 
+	 * without modifying the board. An evaluator must only be used by one 
+	 * thread at a time.
+	 */
+	final class Evaluator {
+		
+		private final Placement placement = new Placement(board);
+		
+		private final CrossLineCache crossLines = new CrossLineCache(board);
+		
+		private Evaluator() {/**/}
+		
+		/**
+		 * Adds the given candidate to the moves, if it is a legal move.
+		 */
+		void score(List<LineItem> items, List<LegalMove> moves) {
+			if (placement.lay(items)) {
+				int points = Grid.evaluate(placement, crossLines);
+				if (points != Grid.INVALID_PLAY) {
+					moves.add(new LegalMove(items, points));
+				}
+			}
+		}
+	}
+	
+	
+	private class GenerateTask extends RecursiveTask<List<LegalMove>> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * The number of anchors below which a task is not split further.
+		 */
+		private static final int THRESHOLD = 4;
+		
+		private final List<Anchor> anchors;
+		
+		private final int from;
+		
+		private final int to;
+		
+		public GenerateTask(List<Anchor> anchors, int from, int to) {
+			this.anchors = anchors;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<LegalMove> compute() {
+			if (to - from <= THRESHOLD) {
+				List<LegalMove> moves = new ArrayList<>();
+				Evaluator evaluator = new Evaluator();
+				for (int n = from; n < to; ++n) {
+					generate(anchors.get(n), evaluator, moves);
+				}
+				return moves;
+			}
+			int middle = (from + to) >>> 1;
+			GenerateTask first = new GenerateTask(anchors, from, middle);
+			GenerateTask second = new GenerateTask(anchors, middle, to);
+			first.fork();
+			List<LegalMove> moves = second.compute();
+			List<LegalMove> result = first.join();
+			result.addAll(moves);
+			return result;
+		}
+	}
+	
+	
+	/**
+	 * A first position and orientation of moves.
+	 */
+	static final class Anchor {
+		
+		private final Orientation orientation;
+		
+		private final int row;
+		
+		private final int col;
+		
+		/**
+		 * The open cell in the first position, or null if the first position
+		 * is not open.
+		 */
+		@Nullable
+		private final OpenCell openCell;
+		
+		private Anchor(Orientation orientation, int row, int col, @Nullable OpenCell openCell) {
+			this.orientation = orientation;
+			this.row = row;
+			this.col = col;
+			this.openCell = openCell;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s@[%d, %d]", orientation, row, col);
+		}
+	}
+	
+	
+	/**
+	 * The k empty positions of a move, starting in an anchor.
+	 */
+	private class Window {
+		
+		private final Orientation orientation;
+		
+		private final int[] rows;
+		
+		private final int[] cols;
+		
+		/**
+		 * The length of the line the move creates, including the cards already
+		 * on the board.
+		 */
+		private final int length;
+		
+		private int commonProperties = CardCode.ALL_PROPERTIES;
+		
+		private int allProperties;
+		
+		private int numberOfConcreteCards;
+		
+		private boolean connected;
+		
+		/**
+		 * For each position, a bit per card in the hand that fits in the line
+		 * perpendicular to the move.
+		 */
+		private final int[] fits;
+		
+		private final Card[] chosen;
+		
+		public Window(Anchor anchor, int k) {
+			this.orientation = anchor.orientation;
+			this.rows = new int[k];
+			this.cols = new int[k];
+			this.fits = new int[k];
+			this.chosen = new Card[k];
+			int dRow = orientation.rowStep();
+			int dCol = orientation.colStep();
+			int before = Line.distanceToEnd(board, anchor.row, anchor.col, -dRow, -dCol);
+			int r = anchor.row;
+			int c = anchor.col;
+			int span = 1;
+			rows[0] = r;
+			cols[0] = c;
+			for (int n = 1; n < k && before + span <= Constants.MAX_LINE_LENGTH; ++span) {
+				r += dRow;
+				c += dCol;
+				if (!board.contains(r, c)) {
+					rows[n] = r;
+					cols[n] = c;
+					++n;
+				}
+			}
+			int after = Line.distanceToEnd(board, r, c, dRow, dCol);
+			this.length = before + span + after;
+			if (length > Constants.MAX_LINE_LENGTH) {
+				return;
+			}
+			int first = -before;
+			for (int n = first; n < span + after; ++n) {
+				Card card = board.get(anchor.row + n * dRow, anchor.col + n * dCol);
+				if (card != null) {
+					addToLine(card.code());
+				}
+			}
+			this.connected = (length > k) || (board.isEmpty() && containsOrigo());
+			Orientation perpendicular = orientation.perpendicular();
+			for (int n = 0; n < k; ++n) {
+				for (int h = 0; h < codes.length; ++h) {
+					long crossLine = Line.scan(board, codes[h], rows[n], cols[n], perpendicular);
+					if (Line.isValid(crossLine)) {
+						fits[n] |= 1 << h;
+						connected |= (Line.length(crossLine) > 1);
+					}
+				}
+			}
+		}
+		
+		private boolean containsOrigo() {
+			for (int n = 0; n < rows.length; ++n) {
+				if (rows[n] == 0 && cols[n] == 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		private void addToLine(int code) {
+			if (!CardCode.isWildcard(code)) {
+				int mask = CardCode.propertyMask(code);
+				commonProperties &= mask;
+				allProperties |= mask;
+				++numberOfConcreteCards;
+			}
+		}
+		
+		/**
+		 * Generates the moves of this window.
+		 * 
+		 * @return false if the line is too long, true otherwise.
+		 */
+		public boolean generate(Evaluator evaluator, List<LegalMove> moves) {
+			if (length > Constants.MAX_LINE_LENGTH) {
+				return false;
+			}
+			if (connected) {
+				assign(0, 0, evaluator, moves);
+			}
+			return true;
+		}
+		
+		private void assign(int position, int usedCards, Evaluator evaluator, List<LegalMove> moves) {
+			if (position == chosen.length) {
+				List<LineItem> items = new ArrayList<>(chosen.length);
+				for (int n = 0; n < chosen.length; ++n) {
+					items.add(new LineItem(chosen[n], rows[n], cols[n]));
+				}
+				evaluator.score(items, moves);
+				return;
+			}
+			int savedCommonProperties = commonProperties;
+			int savedAllProperties = allProperties;
+			int savedNumberOfConcreteCards = numberOfConcreteCards;
+			for (int h = 0; h < codes.length; ++h) {
+				if ((usedCards & (1 << h)) != 0 || (fits[position] & (1 << h)) == 0 || isTriedBefore(h, usedCards)) {
+					continue;
+				}
+				addToLine(codes[h]);
+				if (MatchType.deduce(length, numberOfConcreteCards, commonProperties, allProperties) != null) {
+					chosen[position] = hand.get(h);
+					assign(position + 1, usedCards | (1 << h), evaluator, moves);
+				}
+				commonProperties = savedCommonProperties;
+				allProperties = savedAllProperties;
+				numberOfConcreteCards = savedNumberOfConcreteCards;
+			}
+		}
+		
+		/**
+		 * Checks if an unused card earlier in the hand has the same code as the
+		 * card at the given index, in which case it has already been tried in
+		 * this position.
+		 */
+		private boolean isTriedBefore(int index, int usedCards) {
+			for (int n = 0; n < index; ++n) {
+				if ((usedCards & (1 << n)) == 0 && codes[n] == codes[index]) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+}
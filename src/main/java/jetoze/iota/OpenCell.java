@@ -0,0 +1,81 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * An empty position on the grid that is adjacent to at least one card, together
+ * with the cards that are allowed in that position.
+ */
+public final class OpenCell {
+
+	private final Position position;
+	
+	private final CardSet allowedCards;
+	
+	private final boolean wildcardAllowed;
+
+	public OpenCell(Position position, CardSet allowedCards, boolean wildcardAllowed) {
+		this.position = checkNotNull(position);
+		this.allowedCards = checkNotNull(allowedCards);
+		this.wildcardAllowed = wildcardAllowed;
+	}
+	
+	public Position getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Returns the concrete cards that are allowed in this position.
+	 */
+	public CardSet getAllowedCards() {
+		return allowedCards;
+	}
+	
+	public boolean isWildcardAllowed() {
+		return wildcardAllowed;
+	}
+	
+	/**
+	 * Checks if the given card is allowed in this position.
+	 */
+	public boolean isAllowed(Card card) {
+		checkNotNull(card);
+		return card.isWildcard()
+				? wildcardAllowed
+				: allowedCards.contains(card);
+	}
+	
+	/**
+	 * Checks if no cards at all are allowed in this position.
+	 */
+	public boolean isDead() {
+		return allowedCards.isEmpty() && !wildcardAllowed;
+	}
+
+	@Override
+	public boolean equals(@Nullable Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof OpenCell) {
+			OpenCell that = (OpenCell) o;
+			return this.position.equals(that.position) && 
+					this.allowedCards.equals(that.allowedCards) &&
+					this.wildcardAllowed == that.wildcardAllowed;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * position.hashCode() + allowedCards.hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s: %s%s", position, allowedCards, wildcardAllowed ? " + Wildcard" : "");
+	}
+	
+}
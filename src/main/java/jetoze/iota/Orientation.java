@@ -8,9 +8,40 @@ import java.util.Set;
 
 public enum Orientation {
 
-	HORIZONTAL,
+	HORIZONTAL(0, 1),
 	
-	VERTICAL;
+	VERTICAL(1, 0);
+	
+	private final int rowStep;
+	
+	private final int colStep;
+	
+	private Orientation(int rowStep, int colStep) {
+		this.rowStep = rowStep;
+		this.colStep = colStep;
+	}
+	
+	/**
+	 * The change in row when moving one step forward along a line of this
+	 * orientation.
+	 */
+	public int rowStep() {
+		return rowStep;
+	}
+	
+	/**
+	 * The change in column when moving one step forward along a line of this
+	 * orientation.
+	 */
+	public int colStep() {
+		return colStep;
+	}
+	
+	public Orientation perpendicular() {
+		return (this == HORIZONTAL)
+				? VERTICAL
+				: HORIZONTAL;
+	}
 	
 	
 	public static void validatePoints(LineItem... items) throws IllegalArgumentException {
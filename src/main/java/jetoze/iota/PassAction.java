@@ -16,6 +16,10 @@ public final class PassAction implements GameAction {
 		this.cardsToTrade = ImmutableList.copyOf(cardsToTrade);
 	}
 
+	public ImmutableList<Card> getCardsToTrade() {
+		return cardsToTrade;
+	}
+
 	@Override
 	public Result invoke(Player player, Grid grid, Deck deck) {
 		if (deck.cardsLeft() < this.cardsToTrade.size()) {
@@ -0,0 +1,233 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Grid storage backed by a persistent hash array mapped trie. The trie nodes
+ * are immutable: putting or removing a card copies the path from the root to
+ * the affected leaf, and shares all other nodes with the previous version.
+ * This makes {@link #copy()} a constant time operation.
+ */
+final class PersistentGridStorage implements GridStorage {
+
+	private static final int BITS_PER_LEVEL = 5;
+
+	private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+	private static final Node EMPTY = new Node(0, new Object[0]);
+
+	private Node root;
+
+	private int size;
+
+	public PersistentGridStorage() {
+		this(EMPTY, 0);
+	}
+
+	private PersistentGridStorage(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	@Override
+	@Nullable
+	public Card get(int row, int col) {
+		long key = Position.pack(row, col);
+		return root.get(hash(key), key, 0);
+	}
+
+	@Override
+	public void put(int row, int col, Card card) {
+		checkNotNull(card);
+		long key = Position.pack(row, col);
+		long hash = hash(key);
+		if (root.get(hash, key, 0) == null) {
+			++size;
+		}
+		root = root.with(hash, key, card, 0);
+	}
+
+	@Override
+	public void remove(int row, int col) {
+		long key = Position.pack(row, col);
+		long hash = hash(key);
+		if (root.get(hash, key, 0) != null) {
+			--size;
+			Node newRoot = root.without(hash, key, 0);
+			root = (newRoot != null)
+					? newRoot
+					: EMPTY;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		root.forEach(visitor);
+	}
+
+	@Override
+	public PersistentGridStorage copy() {
+		return new PersistentGridStorage(root, size);
+	}
+
+	/**
+	 * Mixes the bits of the packed position. This is a bijection, so two
+	 * distinct positions never have the same hash, and the trie needs no
+	 * collision nodes.
+	 */
+	private static long hash(long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static int fragment(long hash, int shift) {
+		return (int) (hash >>> shift) & LEVEL_MASK;
+	}
+
+
+	private static final class Entry {
+
+		private final long key;
+
+		private final long hash;
+
+		private final Card card;
+
+		public Entry(long key, long hash, Card card) {
+			this.key = key;
+			this.hash = hash;
+			this.card = card;
+		}
+	}
+
+
+	/**
+	 * A trie node. Bit <i>n</i> of the bitmap is set if the node has a child for
+	 * hash fragment <i>n</i>, and the children are stored in a compact array in
+	 * fragment order. A child is either an {@link Entry} or another Node.
+	 */
+	private static final class Node {
+
+		private final int bitmap;
+
+		private final Object[] children;
+
+		public Node(int bitmap, Object[] children) {
+			this.bitmap = bitmap;
+			this.children = children;
+		}
+
+		@Nullable
+		public Card get(long hash, long key, int shift) {
+			int bit = 1 << fragment(hash, shift);
+			if ((bitmap & bit) == 0) {
+				return null;
+			}
+			Object child = children[index(bit)];
+			if (child instanceof Node) {
+				return ((Node) child).get(hash, key, shift + BITS_PER_LEVEL);
+			}
+			Entry e = (Entry) child;
+			return (e.key == key)
+					? e.card
+					: null;
+		}
+
+		public Node with(long hash, long key, Card card, int shift) {
+			int bit = 1 << fragment(hash, shift);
+			int index = index(bit);
+			if ((bitmap & bit) == 0) {
+				Object[] newChildren = new Object[children.length + 1];
+				System.arraycopy(children, 0, newChildren, 0, index);
+				newChildren[index] = new Entry(key, hash, card);
+				System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+				return new Node(bitmap | bit, newChildren);
+			}
+			Object child = children[index];
+			Object newChild;
+			if (child instanceof Node) {
+				newChild = ((Node) child).with(hash, key, card, shift + BITS_PER_LEVEL);
+			} else {
+				Entry e = (Entry) child;
+				newChild = (e.key == key)
+						? new Entry(key, hash, card)
+						: split(e, new Entry(key, hash, card), shift + BITS_PER_LEVEL);
+			}
+			return withChild(index, newChild);
+		}
+
+		@Nullable
+		public Node without(long hash, long key, int shift) {
+			int bit = 1 << fragment(hash, shift);
+			if ((bitmap & bit) == 0) {
+				return this;
+			}
+			int index = index(bit);
+			Object child = children[index];
+			if (child instanceof Node) {
+				Node newChild = ((Node) child).without(hash, key, shift + BITS_PER_LEVEL);
+				if (newChild != null) {
+					// Pull a lone entry up, to keep the trie shallow.
+					return (newChild.children.length == 1 && newChild.children[0] instanceof Entry)
+							? withChild(index, newChild.children[0])
+							: withChild(index, newChild);
+				}
+			} else if (((Entry) child).key != key) {
+				return this;
+			}
+			if (children.length == 1) {
+				return null;
+			}
+			Object[] newChildren = new Object[children.length - 1];
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+			return new Node(bitmap & ~bit, newChildren);
+		}
+
+		public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+			for (Object child : children) {
+				if (child instanceof Node) {
+					((Node) child).forEach(visitor);
+				} else {
+					Entry e = (Entry) child;
+					visitor.visit(Position.row(e.key), Position.col(e.key), e.card);
+				}
+			}
+		}
+
+		private Node withChild(int index, Object child) {
+			Object[] newChildren = children.clone();
+			newChildren[index] = child;
+			return new Node(bitmap, newChildren);
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		private static Node split(Entry e1, Entry e2, int shift) {
+			int f1 = fragment(e1.hash, shift);
+			int f2 = fragment(e2.hash, shift);
+			if (f1 == f2) {
+				return new Node(1 << f1, new Object[] { split(e1, e2, shift + BITS_PER_LEVEL) });
+			}
+			Object[] children = (f1 < f2)
+					? new Object[] { e1, e2 }
+					: new Object[] { e2, e1 };
+			return new Node((1 << f1) | (1 << f2), children);
+		}
+	}
+
+}
@@ -0,0 +1,250 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * The cards of a play laid over a board, without modifying the board. The
+ * placement is itself a board, with the played cards on top of the cards of
+ * the underlying board, so the lines of the play can be scanned exactly as if
+ * the cards had been placed.
+ * <p>
+ * A placement can be reused for many plays over the same board.
+ */
+final class Placement implements Board {
+
+	private final Board base;
+	
+	/**
+	 * The positions of the played cards, packed with {@link Position#pack(int, int)},
+	 * sorted along the line of the play.
+	 */
+	private final long[] positions = new long[Constants.MAX_LINE_LENGTH];
+	
+	private final Card[] cards = new Card[Constants.MAX_LINE_LENGTH];
+	
+	private int count;
+	
+	private Orientation orientation = Orientation.HORIZONTAL;
+	
+	public Placement(Board base) {
+		this.base = checkNotNull(base);
+	}
+	
+	/**
+	 * Lays out the given cards over the board, sorted along their line.
+	 * 
+	 * @return true if the cards are in distinct, empty positions of a single
+	 *         row or column, with no empty positions between them. If false is
+	 *         returned the placement is left empty.
+	 */
+	public boolean lay(List<LineItem> items) {
+		clear();
+		if (items.isEmpty() || items.size() > Constants.MAX_LINE_LENGTH) {
+			return false;
+		}
+		for (LineItem item : items) {
+			Position p = item.getPosition();
+			add(item.getCard(), p.row, p.col);
+		}
+		if (!isLine()) {
+			clear();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds a card to the placement, keeping the cards sorted along their line.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the placement is full.
+	 */
+	public void add(Card card, int row, int col) {
+		checkNotNull(card);
+		checkState(count < Constants.MAX_LINE_LENGTH, "Placement is full");
+		long position = Position.pack(row, col);
+		int n = count++;
+		// Insertion sort by row, then column.
+		while (n > 0 && compare(positions[n - 1], position) > 0) {
+			positions[n] = positions[n - 1];
+			cards[n] = cards[n - 1];
+			--n;
+		}
+		positions[n] = position;
+		cards[n] = card;
+		updateOrientation();
+	}
+	
+	/**
+	 * Removes the card in the given position from the placement.
+	 * 
+	 * @return the removed card, or null if there was no card in the position.
+	 */
+	@Nullable
+	public Card remove(int row, int col) {
+		long position = Position.pack(row, col);
+		for (int n = 0; n < count; ++n) {
+			if (positions[n] == position) {
+				Card card = cards[n];
+				--count;
+				System.arraycopy(positions, n + 1, positions, n, count - n);
+				System.arraycopy(cards, n + 1, cards, n, count - n);
+				cards[count] = null;
+				updateOrientation();
+				return card;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Removes all cards from the placement.
+	 */
+	public void clear() {
+		Arrays.fill(cards, null);
+		count = 0;
+		orientation = Orientation.HORIZONTAL;
+	}
+	
+	private void updateOrientation() {
+		// A single card is placed horizontally by convention. Cards that are not
+		// in a line are detected by isLine().
+		orientation = (count > 1 && row(0) != row(1))
+				? Orientation.VERTICAL
+				: Orientation.HORIZONTAL;
+	}
+	
+	/**
+	 * Checks if the cards are in distinct, empty positions of a single row or
+	 * column, with no empty positions between them.
+	 */
+	public boolean isLine() {
+		if (count == 0) {
+			return false;
+		}
+		int dRow = orientation.rowStep();
+		int dCol = orientation.colStep();
+		for (int n = 0; n < count; ++n) {
+			if (base.contains(row(n), col(n))) {
+				return false;
+			}
+			if (n > 0) {
+				boolean inLine = (dRow == 0)
+						? row(n) == row(0)
+						: col(n) == col(0);
+				if (!inLine || positions[n] == positions[n - 1]) {
+					return false;
+				}
+				// Cards on the board must fill the gaps between the played cards.
+				for (int r = row(n - 1) + dRow, c = col(n - 1) + dCol; r != row(n) || c != col(n); r += dRow, c += dCol) {
+					if (!base.contains(r, c)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+	
+	private static int compare(long p1, long p2) {
+		int c = Integer.compare(Position.row(p1), Position.row(p2));
+		return (c != 0)
+				? c
+				: Integer.compare(Position.col(p1), Position.col(p2));
+	}
+	
+	/**
+	 * Returns the number of played cards.
+	 */
+	public int count() {
+		return count;
+	}
+	
+	public Orientation orientation() {
+		return orientation;
+	}
+	
+	public int row(int n) {
+		return Position.row(positions[n]);
+	}
+	
+	public int col(int n) {
+		return Position.col(positions[n]);
+	}
+	
+	public Card card(int n) {
+		return cards[n];
+	}
+	
+	/**
+	 * Returns the positions of the played cards, sorted along their line.
+	 */
+	public long[] positions() {
+		return Arrays.copyOf(positions, count);
+	}
+	
+	/**
+	 * Same as {@link #positions()}, but without copying the positions. Only the
+	 * first {@link #count()} elements are in use, and the array must not be 
+	 * modified.
+	 */
+	public long[] packedPositions() {
+		return positions;
+	}
+	
+	/**
+	 * Returns the underlying board.
+	 */
+	public Board base() {
+		return base;
+	}
+	
+	@Override
+	@Nullable
+	public Card get(int row, int col) {
+		long key = Position.pack(row, col);
+		for (int n = 0; n < count; ++n) {
+			if (positions[n] == key) {
+				return cards[n];
+			}
+		}
+		return base.get(row, col);
+	}
+
+	@Override
+	public long wildcardCandidates(int row, int col, Orientation orientation) {
+		// The underlying board knows the answer, unless the line contains a
+		// played card.
+		int dRow = orientation.rowStep();
+		int dCol = orientation.colStep();
+		for (int n = 0; n < count; ++n) {
+			boolean sameLine = (dRow == 0)
+					? row(n) == row
+					: col(n) == col;
+			if (sameLine) {
+				return Board.super.wildcardCandidates(row, col, orientation);
+			}
+		}
+		return base.wildcardCandidates(row, col, orientation);
+	}
+
+	@Override
+	public int size() {
+		return base.size() + count;
+	}
+
+	@Override
+	public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		base.forEach(visitor);
+		for (int n = 0; n < count; ++n) {
+			visitor.visit(row(n), col(n), cards[n]);
+		}
+	}
+	
+}
@@ -0,0 +1,119 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Previews the cards a player has tentatively placed on a grid during a turn.
+ * The cards are kept as an overlay on the live grid, so the grid is never
+ * copied or modified. Adding or removing a card updates the overlay in place,
+ * and the validity and value of the placement are then re-evaluated. The 
+ * perpendicular line of each position is only scanned once per turn, since it
+ * does not depend on the other placed cards.
+ */
+final class PlacementPreview {
+
+	private final Grid grid;
+	
+	private final Placement placement;
+	
+	private CrossLineCache cache;
+	
+	/**
+	 * The modification count of the grid that the cache was created for.
+	 */
+	private int cacheModificationCount;
+	
+	/**
+	 * The value of the placement, or INVALID_PLAY. Computed on demand.
+	 */
+	private int value;
+	
+	private boolean valueIsKnown;
+	
+	public PlacementPreview(Grid grid) {
+		this.grid = checkNotNull(grid);
+		this.placement = new Placement(grid.board());
+		this.cache = new CrossLineCache(grid.board());
+		this.cacheModificationCount = grid.getModificationCount();
+	}
+	
+	/**
+	 * Adds a card to the preview.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is already a card in the same position in the 
+	 *             preview.
+	 */
+	public void add(LineItem item) {
+		checkNotNull(item);
+		Position p = item.getPosition();
+		checkArgument(!isPreviewed(p), "There is already a card in this position");
+		placement.add(item.getCard(), p.row, p.col);
+		valueIsKnown = false;
+	}
+	
+	private boolean isPreviewed(Position p) {
+		for (int n = 0; n < placement.count(); ++n) {
+			if (placement.row(n) == p.row && placement.col(n) == p.col) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes the card in the given position from the preview.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no card in the given position in the preview.
+	 */
+	public void remove(Position position) {
+		checkNotNull(position);
+		checkArgument(placement.remove(position.row, position.col) != null, "No card in this position");
+		valueIsKnown = false;
+	}
+	
+	/**
+	 * Removes all cards from the preview.
+	 */
+	public void clear() {
+		placement.clear();
+		valueIsKnown = false;
+	}
+	
+	public int getNumberOfCards() {
+		return placement.count();
+	}
+	
+	/**
+	 * Checks if the previewed cards form a valid line.
+	 */
+	public boolean isValid() {
+		return evaluate() != Grid.INVALID_PLAY;
+	}
+	
+	/**
+	 * Returns the number of points the previewed cards would generate, or 0 if
+	 * there are no cards or they do not form a valid line.
+	 */
+	public int getValue() {
+		return Math.max(0, evaluate());
+	}
+	
+	private int evaluate() {
+		if (!valueIsKnown) {
+			if (cacheModificationCount != grid.getModificationCount()) {
+				// The grid has changed since the lines were cached.
+				cache = new CrossLineCache(grid.board());
+				cacheModificationCount = grid.getModificationCount();
+			}
+			value = placement.isLine()
+					? Grid.evaluate(placement, cache)
+					: Grid.INVALID_PLAY;
+			valueIsKnown = true;
+		}
+		return value;
+	}
+	
+}
@@ -12,10 +12,17 @@ public final class PlayLineAction implements GameAction {
 		this.cardsToPlay = ImmutableList.copyOf(cardsToPlay);
 	}
 
+	public ImmutableList<LineItem> getCardsToPlay() {
+		return cardsToPlay;
+	}
+
 	@Override
 	public Result invoke(Player player, Grid grid, Deck deck) {
 		try {
 			int points = grid.addLine(cardsToPlay);
+			// The cards are normally moved from the hand to the board one by one
+			// before the line is played, but make sure they are gone.
+			cardsToPlay.forEach(i -> player.removeCard(i.getCard()));
 			while (player.needsCards() && !deck.isEmpty()) {
 				player.giveCard(deck.next());
 			}
@@ -1,7 +1,5 @@
 package jetoze.iota;
 
-import java.util.Objects;
-
 public final class Position {
 	
 	public final int row;
@@ -29,6 +27,30 @@ public final class Position {
 		return new Position(row + 1, col);
 	}
 	
+	/**
+	 * Packs the given row and column into a single long, with the row in the
+	 * upper 32 bits and the column in the lower 32 bits.
+	 */
+	public static long pack(int row, int col) {
+		return ((long) row << 32) | (col & 0xFFFFFFFFL);
+	}
+	
+	public static int row(long packed) {
+		return (int) (packed >> 32);
+	}
+	
+	public static int col(long packed) {
+		return (int) packed;
+	}
+	
+	public static Position unpack(long packed) {
+		return new Position(row(packed), col(packed));
+	}
+	
+	public long pack() {
+		return pack(row, col);
+	}
+	
 	@Override
 	public boolean equals(Object o) {
 		if (o == this) {
@@ -43,7 +65,7 @@ public final class Position {
 	
 	@Override
 	public int hashCode() {
-		return Objects.hash(row, col);
+		return 31 * row + col;
 	}
 	
 	@Override
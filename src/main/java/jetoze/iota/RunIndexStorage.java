@@ -0,0 +1,206 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Grid storage that keeps an index of the runs of cards in another storage.
+ * For each occupied position, the index records the first and last position
+ * of the horizontal and the vertical run of cards it is part of, so that the
+ * distance from any position to the end of a run is a single lookup.
+ * <p>
+ * The index is updated as runs are extended, merged and split by cards being
+ * put and removed. Since a valid line has at most four cards, this touches at
+ * most a handful of positions per card.
+ */
+final class RunIndexStorage implements GridStorage {
+
+	private final GridStorage cards;
+
+	/**
+	 * The runs of each orientation, keyed by the positions in them. All 
+	 * positions of a run map to the same Run.
+	 */
+	private final CoordinateMap<Run> horizontalRuns;
+
+	private final CoordinateMap<Run> verticalRuns;
+
+	/**
+	 * Whether the runs are indexed. A storage that is created without the 
+	 * index never builds it, and all queries go to the underlying storage.
+	 * This is for grids that are used once, e.g. to add a line to a snapshot,
+	 * which would otherwise have to visit all the cards to build the index.
+	 */
+	private final boolean tracking;
+
+	/**
+	 * Creates a storage that indexes the runs of the cards in the given storage.
+	 * 
+	 * @param track
+	 *            whether the runs should be indexed. Otherwise they are never
+	 *            indexed, and all queries go to the given storage.
+	 */
+	public RunIndexStorage(GridStorage cards, boolean track) {
+		this(checkNotNull(cards), new CoordinateMap<>(), new CoordinateMap<>(), track);
+		if (track) {
+			cards.forEach((row, col, card) -> addToRuns(row, col));
+		}
+	}
+
+	private RunIndexStorage(GridStorage cards, 
+							CoordinateMap<Run> horizontalRuns, 
+							CoordinateMap<Run> verticalRuns, 
+							boolean tracking) {
+		this.cards = cards;
+		this.horizontalRuns = horizontalRuns;
+		this.verticalRuns = verticalRuns;
+		this.tracking = tracking;
+	}
+
+	private CoordinateMap<Run> runs(Orientation orientation) {
+		return (orientation == Orientation.HORIZONTAL)
+				? horizontalRuns
+				: verticalRuns;
+	}
+
+	/**
+	 * Returns the coordinate of the given position along a line of the given
+	 * orientation.
+	 */
+	private static int along(Orientation orientation, int row, int col) {
+		return (orientation == Orientation.HORIZONTAL)
+				? col
+				: row;
+	}
+
+	@Override
+	@Nullable
+	public Card get(int row, int col) {
+		return cards.get(row, col);
+	}
+
+	@Override
+	public boolean contains(int row, int col) {
+		return cards.contains(row, col);
+	}
+
+	@Override
+	public boolean hasNeighbor(int row, int col) {
+		return cards.hasNeighbor(row, col);
+	}
+
+	@Override
+	public int distanceToEnd(int row, int col, int dRow, int dCol) {
+		if (!tracking) {
+			return cards.distanceToEnd(row, col, dRow, dCol);
+		}
+		int r = row + dRow;
+		int c = col + dCol;
+		Orientation orientation = (dRow == 0)
+				? Orientation.HORIZONTAL
+				: Orientation.VERTICAL;
+		Run run = runs(orientation).get(r, c);
+		if (run == null) {
+			return 0;
+		}
+		int neighbor = along(orientation, r, c);
+		int distance = (dRow + dCol > 0)
+				? run.end - neighbor + 1
+				: neighbor - run.start + 1;
+		return Math.min(distance, Constants.MAX_LINE_LENGTH);
+	}
+
+	@Override
+	public int size() {
+		return cards.size();
+	}
+
+	@Override
+	public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		cards.forEach(visitor);
+	}
+
+	@Override
+	public void put(int row, int col, Card card) {
+		boolean wasOccupied = cards.contains(row, col);
+		cards.put(row, col, card);
+		if (tracking && !wasOccupied) {
+			addToRuns(row, col);
+		}
+	}
+
+	@Override
+	public void remove(int row, int col) {
+		if (tracking && cards.contains(row, col)) {
+			removeFromRuns(row, col);
+		}
+		cards.remove(row, col);
+	}
+
+	private void addToRuns(int row, int col) {
+		for (Orientation o : Orientation.values()) {
+			CoordinateMap<Run> runs = runs(o);
+			// The new position extends the runs on either side of it, and merges
+			// them if there are runs on both sides.
+			Run before = runs.get(row - o.rowStep(), col - o.colStep());
+			Run after = runs.get(row + o.rowStep(), col + o.colStep());
+			int position = along(o, row, col);
+			Run merged = new Run(
+					(before != null) ? before.start : position, 
+					(after != null) ? after.end : position);
+			assign(o, row, col, merged);
+		}
+	}
+
+	private void removeFromRuns(int row, int col) {
+		for (Orientation o : Orientation.values()) {
+			CoordinateMap<Run> runs = runs(o);
+			Run run = runs.remove(row, col);
+			int position = along(o, row, col);
+			// Split the run in two.
+			if (run.start < position) {
+				assign(o, row - o.rowStep(), col - o.colStep(), new Run(run.start, position - 1));
+			}
+			if (position < run.end) {
+				assign(o, row + o.rowStep(), col + o.colStep(), new Run(position + 1, run.end));
+			}
+		}
+	}
+
+	/**
+	 * Assigns the given run to all its positions, given one of them.
+	 */
+	private void assign(Orientation orientation, int row, int col, Run run) {
+		CoordinateMap<Run> runs = runs(orientation);
+		int position = along(orientation, row, col);
+		int startRow = row - (position - run.start) * orientation.rowStep();
+		int startCol = col - (position - run.start) * orientation.colStep();
+		for (int n = 0; n <= run.end - run.start; ++n) {
+			runs.put(startRow + n * orientation.rowStep(), startCol + n * orientation.colStep(), run);
+		}
+	}
+
+	@Override
+	public RunIndexStorage copy() {
+		// The runs are immutable, so the copies can share them.
+		return new RunIndexStorage(cards.copy(), horizontalRuns.copy(), verticalRuns.copy(), tracking);
+	}
+
+
+	/**
+	 * The first and last position of a run of cards, along its orientation.
+	 */
+	private static final class Run {
+
+		private final int start;
+
+		private final int end;
+
+		public Run(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+}
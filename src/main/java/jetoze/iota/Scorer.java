@@ -0,0 +1,85 @@
+package jetoze.iota;
+
+/**
+ * Computes the points of a play from the final placement of its cards,
+ * without creating any intermediate objects.
+ * <p>
+ * The points of a play are the sum of the face values of the cards in each
+ * line of two or more cards that contains at least one of the played cards.
+ * Each such line that is a lot (i.e. has four cards) doubles the points, as
+ * does playing four cards.
+ */
+final class Scorer {
+
+	private static final Orientation[] ORIENTATIONS = Orientation.values();
+
+	/**
+	 * Returns the points of a play.
+	 * 
+	 * @param board
+	 *            the board, with the played cards on it.
+	 * @param positions
+	 *            the positions of the played cards, packed with
+	 *            {@link Position#pack(int, int)}. The first {@code count}
+	 *            elements are used.
+	 * @param count
+	 *            the number of played cards.
+	 */
+	static int score(Board board, long[] positions, int count) {
+		int base = 0;
+		int lots = 0;
+		for (Orientation o : ORIENTATIONS) {
+			int dRow = o.rowStep();
+			int dCol = o.colStep();
+			for (int n = 0; n < count; ++n) {
+				int row = Position.row(positions[n]);
+				int col = Position.col(positions[n]);
+				long line = Line.scan(board, board.get(row, col).code(), row, col, o);
+				int length = Line.length(line);
+				// A card that is alone in a line is counted in the other line.
+				if (length == 1 || isCountedBefore(positions, n, row - Line.offset(line) * dRow, 
+						col - Line.offset(line) * dCol, length, o)) {
+					continue;
+				}
+				base += Line.faceValue(line);
+				if (Line.isLot(line)) {
+					++lots;
+				}
+			}
+		}
+		int points = base << lots;
+		return (count == Constants.MAX_LINE_LENGTH)
+				? 2 * points
+				: points;
+	}
+	
+	/**
+	 * Checks if the line that starts in the given position has already been
+	 * counted, i.e. if it contains one of the played cards that come before 
+	 * the n:th card.
+	 */
+	private static boolean isCountedBefore(long[] positions, 
+										   int n, 
+										   int startRow, 
+										   int startCol, 
+										   int length, 
+										   Orientation o) {
+		for (int m = 0; m < n; ++m) {
+			int row = Position.row(positions[m]);
+			int col = Position.col(positions[m]);
+			int steps = (o == Orientation.HORIZONTAL)
+					? col - startCol
+					: row - startRow;
+			boolean sameLine = (o == Orientation.HORIZONTAL)
+					? row == startRow
+					: col == startCol;
+			if (sameLine && steps >= 0 && steps < length) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private Scorer() {/**/}
+
+}
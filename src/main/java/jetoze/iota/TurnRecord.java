@@ -0,0 +1,175 @@
+package jetoze.iota;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Records one turn of a game: who played, what they played or traded, the
+ * points they got, and the cards they drew from the deck. Cards are recorded
+ * by their {@link CardCode codes}, and positions are packed with 
+ * {@link Position#pack(int, int)}.
+ * 
+ * @see GameLog
+ */
+public final class TurnRecord {
+
+	public static enum Type {
+		
+		/**
+		 * The player played a line of cards.
+		 */
+		PLAY, 
+		
+		/**
+		 * The player passed, optionally trading cards with the deck.
+		 */
+		PASS
+	}
+	
+	private static final long[] NO_POSITIONS = new long[0];
+	
+	private final Type type;
+	
+	private final int playerIndex;
+	
+	/**
+	 * The played or traded cards.
+	 */
+	private final int[] cardCodes;
+	
+	/**
+	 * The positions of the played cards. Empty for a pass.
+	 */
+	private final long[] positions;
+	
+	private final int points;
+	
+	private final int[] drawnCardCodes;
+	
+	TurnRecord(Type type, int playerIndex, int[] cardCodes, long[] positions, int points, int[] drawnCardCodes) {
+		this.type = checkNotNull(type);
+		checkArgument(playerIndex >= 0 && playerIndex < Constants.MAX_NUMBER_OF_PLAYERS);
+		checkArgument(type == Type.PLAY
+				? positions.length == cardCodes.length && cardCodes.length > 0
+				: positions.length == 0 && points == 0);
+		checkArgument(points >= 0);
+		this.playerIndex = playerIndex;
+		this.cardCodes = cardCodes;
+		this.positions = positions;
+		this.points = points;
+		this.drawnCardCodes = drawnCardCodes;
+	}
+	
+	static TurnRecord play(int playerIndex, List<LineItem> items, int points, List<Card> drawnCards) {
+		int[] codes = new int[items.size()];
+		long[] positions = new long[items.size()];
+		for (int n = 0; n < codes.length; ++n) {
+			codes[n] = items.get(n).getCard().code();
+			positions[n] = items.get(n).getPosition().pack();
+		}
+		return new TurnRecord(Type.PLAY, playerIndex, codes, positions, points, codesOf(drawnCards));
+	}
+	
+	static TurnRecord pass(int playerIndex, List<Card> tradedCards, List<Card> drawnCards) {
+		return new TurnRecord(Type.PASS, playerIndex, codesOf(tradedCards), NO_POSITIONS, 0, codesOf(drawnCards));
+	}
+	
+	private static int[] codesOf(List<Card> cards) {
+		return cards.stream().mapToInt(Card::code).toArray();
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public int getPlayerIndex() {
+		return playerIndex;
+	}
+	
+	/**
+	 * Returns the number of cards that were played or traded.
+	 */
+	public int getNumberOfCards() {
+		return cardCodes.length;
+	}
+	
+	/**
+	 * Returns the code of the n:th played or traded card.
+	 */
+	public int getCardCode(int n) {
+		return cardCodes[n];
+	}
+	
+	/**
+	 * Returns the packed position of the n:th played card.
+	 */
+	public long getPosition(int n) {
+		return positions[n];
+	}
+	
+	/**
+	 * Returns the played cards, with new instances of any wildcards.
+	 */
+	public List<LineItem> getLineItems() {
+		List<LineItem> items = new ArrayList<>(cardCodes.length);
+		for (int n = 0; n < positions.length; ++n) {
+			items.add(new LineItem(Card.fromCode(cardCodes[n]), Position.unpack(positions[n])));
+		}
+		return items;
+	}
+	
+	public int getPoints() {
+		return points;
+	}
+	
+	public int getNumberOfDrawnCards() {
+		return drawnCardCodes.length;
+	}
+	
+	/**
+	 * Returns the code of the n:th card drawn from the deck.
+	 */
+	public int getDrawnCardCode(int n) {
+		return drawnCardCodes[n];
+	}
+	
+	@Override
+	public boolean equals(@Nullable Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (o instanceof TurnRecord) {
+			TurnRecord that = (TurnRecord) o;
+			return this.type == that.type &&
+					this.playerIndex == that.playerIndex &&
+					this.points == that.points &&
+					Arrays.equals(this.cardCodes, that.cardCodes) &&
+					Arrays.equals(this.positions, that.positions) &&
+					Arrays.equals(this.drawnCardCodes, that.drawnCardCodes);
+		}
+		return false;
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = type.hashCode();
+		hash = 31 * hash + playerIndex;
+		hash = 31 * hash + points;
+		hash = 31 * hash + Arrays.hashCode(cardCodes);
+		hash = 31 * hash + Arrays.hashCode(positions);
+		return 31 * hash + Arrays.hashCode(drawnCardCodes);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s by player %d: %s %s, %d points, drew %s", type, playerIndex, 
+				Arrays.toString(cardCodes), Arrays.toString(positions), points, Arrays.toString(drawnCardCodes));
+	}
+	
+}
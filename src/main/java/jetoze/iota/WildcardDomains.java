@@ -0,0 +1,166 @@
+package jetoze.iota;
+
+import javax.annotation.Nullable;
+
+/**
+ * A view of a board that keeps track of the domain of each wildcard on it,
+ * i.e. the concrete cards the wildcard can represent given the lines it is in.
+ * <p>
+ * The domain of a wildcard is the intersection of the cards that fit in its 
+ * horizontal line and the cards that fit in its vertical line. The two parts
+ * are stored separately, and each part is narrowed or widened as cards join 
+ * or leave that line. The owner of the board must report every change of the
+ * board with {@link #cardChanged(int, int)}.
+ */
+final class WildcardDomains implements Board {
+
+	private final Board board;
+
+	/**
+	 * For each wildcard, the bits of the cards it can represent in its 
+	 * horizontal and vertical line, in that order. The arrays are never 
+	 * modified once they are in the map, so that copies can share them.
+	 */
+	private final CoordinateMap<long[]> domains;
+
+	/**
+	 * The domains are not tracked until they are first needed, so that grids
+	 * that are created from a snapshot and used only once do not have to visit
+	 * all the cards. Until then, the lines of the wildcards are scanned on
+	 * demand.
+	 */
+	private boolean initialized;
+
+	public WildcardDomains(Board board, boolean initialized) {
+		this.board = board;
+		this.domains = new CoordinateMap<>();
+		if (initialized) {
+			initialize();
+		}
+	}
+
+	private WildcardDomains(Board board, WildcardDomains source) {
+		this.board = board;
+		this.domains = source.domains.copy();
+		this.initialized = source.initialized;
+	}
+
+	/**
+	 * Returns a copy of these domains for a copy of the underlying board.
+	 */
+	public WildcardDomains copy(Board copyOfBoard) {
+		return new WildcardDomains(copyOfBoard, this);
+	}
+
+	private void initialize() {
+		initialized = true;
+		board.forEach((row, col, card) -> {
+			if (card.isWildcard()) {
+				domains.put(row, col, new long[] { 
+					scan(row, col, Orientation.HORIZONTAL), 
+					scan(row, col, Orientation.VERTICAL) });
+			}
+		});
+	}
+
+	@Override
+	@Nullable
+	public Card get(int row, int col) {
+		return board.get(row, col);
+	}
+
+	@Override
+	public boolean contains(int row, int col) {
+		return board.contains(row, col);
+	}
+
+	@Override
+	public boolean hasNeighbor(int row, int col) {
+		return board.hasNeighbor(row, col);
+	}
+
+	@Override
+	public int distanceToEnd(int row, int col, int dRow, int dCol) {
+		return board.distanceToEnd(row, col, dRow, dCol);
+	}
+
+	@Override
+	public int size() {
+		return board.size();
+	}
+
+	@Override
+	public void forEach(CoordinateMap.EntryVisitor<? super Card> visitor) {
+		board.forEach(visitor);
+	}
+
+	@Override
+	public long wildcardCandidates(int row, int col, Orientation orientation) {
+		long[] domain = initialized
+				? domains.get(row, col)
+				: null;
+		return (domain != null)
+				? domain[orientation.ordinal()]
+				: scan(row, col, orientation);
+	}
+
+	/**
+	 * Returns the bits of the cards the wildcard in the given position can
+	 * represent, or 0 if there is no wildcard in that position.
+	 */
+	public long domainOf(int row, int col) {
+		if (!initialized) {
+			initialize();
+		}
+		long[] domain = domains.get(row, col);
+		return (domain != null)
+				? domain[0] & domain[1]
+				: 0L;
+	}
+
+	/**
+	 * Updates the domains after a card has been placed in or removed from the
+	 * given position. Only the wildcards in the runs of cards through the
+	 * position are affected.
+	 */
+	public void cardChanged(int row, int col) {
+		if (!initialized) {
+			return;
+		}
+		Card card = board.get(row, col);
+		if (card != null && card.isWildcard()) {
+			domains.put(row, col, new long[] { 
+				scan(row, col, Orientation.HORIZONTAL), 
+				scan(row, col, Orientation.VERTICAL) });
+		} else {
+			domains.remove(row, col);
+		}
+		for (Orientation o : Orientation.values()) {
+			updateRun(row, col, o, -1);
+			updateRun(row, col, o, 1);
+		}
+	}
+
+	/**
+	 * Updates the part of the domains that belongs to the given orientation for
+	 * the wildcards in the run of cards that starts next to the given position,
+	 * in the given direction.
+	 */
+	private void updateRun(int row, int col, Orientation orientation, int direction) {
+		int dRow = direction * orientation.rowStep();
+		int dCol = direction * orientation.colStep();
+		for (int r = row + dRow, c = col + dCol; board.contains(r, c); r += dRow, c += dCol) {
+			long[] domain = domains.get(r, c);
+			if (domain != null) {
+				long[] updated = domain.clone();
+				updated[orientation.ordinal()] = scan(r, c, orientation);
+				domains.put(r, c, updated);
+			}
+		}
+	}
+
+	private long scan(int row, int col, Orientation orientation) {
+		return Board.super.wildcardCandidates(row, col, orientation);
+	}
+
+}
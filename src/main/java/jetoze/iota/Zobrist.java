@@ -0,0 +1,55 @@
+package jetoze.iota;
+
+/**
+ * Zobrist keys for hashing game positions.
+ * <p>
+ * The hash of a position is the XOR of the keys of all its features (a card 
+ * in a position on the grid, the player in turn, and so on), which means it can
+ * be updated incrementally by XOR-ing in the key of a feature when it is added,
+ * and again when it is removed. Since the grid is unbounded, the keys are not
+ * drawn from a precomputed random table, but derived by mixing the bits of the
+ * feature with the SplitMix64 finalizer.
+ */
+final class Zobrist {
+
+	private static final long GRID_SEED = 0x6A09E667F3BCC908L;
+
+	private static final long HAND_SEED = 0xBB67AE8584CAA73BL;
+
+	private static final long DECK_SEED = 0x3C6EF372FE94F82BL;
+
+	private static final long TURN_SEED = 0xA54FF53A5F1D36F1L;
+
+	/**
+	 * Returns the key of the card with the given code in the given position of
+	 * the grid.
+	 */
+	static long gridKey(int row, int col, int code) {
+		return mix(GRID_SEED ^ mix(Position.pack(row, col)) ^ code);
+	}
+
+	/**
+	 * Returns the key of the card with the given code in the hand of the player
+	 * with the given index.
+	 */
+	static long handKey(int playerIndex, int code) {
+		return mix(HAND_SEED ^ ((long) playerIndex << 8) ^ code);
+	}
+
+	static long deckKey(int cardsLeft) {
+		return mix(DECK_SEED ^ cardsLeft);
+	}
+
+	static long turnKey(int playerIndex) {
+		return mix(TURN_SEED ^ playerIndex);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private Zobrist() {/**/}
+
+}
@@ -0,0 +1,98 @@
+package jetoze.iota;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitboardStorageTest {
+
+	@Test
+	public void queriesMatchTheUnderlyingStorage() {
+		// Random runs of cards, some of them across the edges of the window.
+		Random random = new Random(19);
+		Card card = Card.allConcreteCards().get(0);
+		HashGridStorage reference = new HashGridStorage();
+		BitboardStorage storage = new BitboardStorage(new HashGridStorage(), true);
+		for (int n = 0; n < 120; ++n) {
+			int row = random.nextInt(80) - 40;
+			int col = random.nextInt(80) - 40;
+			boolean horizontal = random.nextBoolean();
+			int length = 1 + random.nextInt(6);
+			for (int m = 0; m < length; ++m) {
+				int r = horizontal ? row : row + m;
+				int c = horizontal ? col + m : col;
+				reference.put(r, c, card);
+				storage.put(r, c, card);
+			}
+		}
+		// Remove some of them again.
+		for (int n = 0; n < 400; ++n) {
+			int row = random.nextInt(80) - 40;
+			int col = random.nextInt(80) - 40;
+			reference.remove(row, col);
+			storage.remove(row, col);
+		}
+		assertSameQueries(reference, storage);
+		assertSameQueries(reference, storage.copy());
+		
+		// Cards put and removed before the bitboards are built are picked up
+		// by the first query, and the bitboards are kept up to date after that.
+		BitboardStorage untracked = new BitboardStorage(reference.copy(), false);
+		putAndRemove(reference, untracked, random);
+		assertSameQueries(reference, untracked);
+		putAndRemove(reference, untracked, random);
+		assertSameQueries(reference, untracked);
+		assertSameQueries(reference, untracked.copy());
+	}
+	
+	private static void putAndRemove(GridStorage reference, GridStorage storage, Random random) {
+		Card card = Card.allConcreteCards().get(0);
+		for (int n = 0; n < 40; ++n) {
+			int row = random.nextInt(80) - 40;
+			int col = random.nextInt(80) - 40;
+			if (random.nextBoolean()) {
+				reference.put(row, col, card);
+				storage.put(row, col, card);
+			} else {
+				reference.remove(row, col);
+				storage.remove(row, col);
+			}
+		}
+	}
+	
+	private static void assertSameQueries(Board expected, Board actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int row = -42; row <= 42; ++row) {
+			for (int col = -42; col <= 42; ++col) {
+				String position = row + ", " + col;
+				assertEquals(position, expected.contains(row, col), actual.contains(row, col));
+				assertEquals(position, expected.hasNeighbor(row, col), actual.hasNeighbor(row, col));
+				for (Orientation o : Orientation.values()) {
+					for (int direction : new int[] { -1, 1 }) {
+						int dRow = direction * o.rowStep();
+						int dCol = direction * o.colStep();
+						assertEquals(position, 
+								expected.distanceToEnd(row, col, dRow, dCol), 
+								actual.distanceToEnd(row, col, dRow, dCol));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void cardsAreStoredInTheUnderlyingStorage() {
+		List<Card> cards = Card.allConcreteCards();
+		DenseGridStorage cells = new DenseGridStorage();
+		BitboardStorage storage = new BitboardStorage(cells, true);
+		storage.put(0, 0, cards.get(0));
+		storage.put(100, -100, cards.get(1));
+		assertEquals(cards.get(0), cells.get(0, 0));
+		assertEquals(cards.get(1), storage.get(100, -100));
+		assertEquals(2, storage.size());
+	}
+	
+}
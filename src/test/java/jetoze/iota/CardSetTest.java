@@ -0,0 +1,64 @@
+package jetoze.iota;
+
+import static jetoze.iota.Card.newCard;
+import static jetoze.iota.Constants.Color.BLUE;
+import static jetoze.iota.Constants.Color.GREEN;
+import static jetoze.iota.Constants.Color.RED;
+import static jetoze.iota.Constants.Shape.CIRCLE;
+import static jetoze.iota.Constants.Shape.CROSS;
+import static jetoze.iota.Constants.Shape.SQUARE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CardSetTest {
+
+	@Test
+	public void allCards() {
+		CardSet all = CardSet.allCards();
+		assertEquals(CardCode.NUMBER_OF_CONCRETE_CODES, all.size());
+		assertEquals(Card.createPossibleCards(Constants.collectAllCardProperties()), all.toSet());
+		assertTrue(CardSet.empty().isEmpty());
+	}
+	
+	@Test
+	public void setOperations() {
+		Card blueSquare1 = newCard(BLUE, SQUARE, 1);
+		Card redCircle2 = newCard(RED, CIRCLE, 2);
+		Card greenCross4 = newCard(GREEN, CROSS, 4);
+		CardSet s1 = CardSet.of(blueSquare1, redCircle2);
+		CardSet s2 = CardSet.of(redCircle2, greenCross4);
+		
+		assertEquals(CardSet.of(redCircle2), s1.intersect(s2));
+		assertEquals(CardSet.of(blueSquare1, redCircle2, greenCross4), s1.union(s2));
+		assertEquals(CardSet.of(blueSquare1), s1.without(s2));
+		assertEquals(2, s1.size());
+		assertTrue(s1.contains(blueSquare1));
+		assertFalse(s1.contains(greenCross4));
+		assertFalse(s1.contains(Card.wildcard()));
+	}
+	
+	@Test
+	public void iterateInCodeOrder() {
+		Card blueSquare1 = newCard(BLUE, SQUARE, 1);
+		Card redCircle2 = newCard(RED, CIRCLE, 2);
+		Card greenCross4 = newCard(GREEN, CROSS, 4);
+		List<Card> actual = new ArrayList<>();
+		CardSet.of(greenCross4, blueSquare1, redCircle2).forEach(actual::add);
+		List<Card> expected = Arrays.asList(blueSquare1, redCircle2, greenCross4);
+		expected.sort((c1, c2) -> Integer.compare(c1.code(), c2.code()));
+		assertEquals(expected, actual);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void wildcardsAreNotAllowed() {
+		CardSet.of(Card.wildcard());
+	}
+	
+}
@@ -1,8 +1,10 @@
 package jetoze.iota;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Test;
@@ -33,4 +35,40 @@ public class CardTest {
 		assertEquals(s0, wc.match(s0));
 	}
 	
+	@Test
+	public void codeRoundTrip() {
+		Set<Integer> codes = new HashSet<>();
+		for (Card card : Card.createPossibleCards(Constants.collectAllCardProperties())) {
+			int code = card.code();
+			assertTrue(CardCode.isValid(code));
+			assertEquals(card, Card.fromCode(code));
+			codes.add(code);
+		}
+		assertEquals(CardCode.NUMBER_OF_CONCRETE_CODES, codes.size());
+		
+		Card wc = Card.wildcard();
+		assertEquals(CardCode.WILDCARD, wc.code());
+		assertTrue(Card.fromCode(wc.code()).isWildcard());
+	}
+	
+	@Test
+	public void decodeCode() {
+		int code = Card.newCard(Color.YELLOW, Shape.TRIANGLE, 3).code();
+		assertEquals(Color.YELLOW, CardCode.color(code));
+		assertEquals(Shape.TRIANGLE, CardCode.shape(code));
+		assertEquals(3, CardCode.faceValue(code));
+		assertEquals(0, CardCode.faceValue(CardCode.WILDCARD));
+	}
+	
+	@Test
+	public void concreteCardsAreCanonical() {
+		Card blueSquareOne = Card.newCard(Color.BLUE, Shape.SQUARE, 1);
+		assertSame(blueSquareOne, Card.newCard(Color.BLUE, Shape.SQUARE, 1));
+		assertSame(blueSquareOne, Card.fromCode(blueSquareOne.code()));
+		for (Card c : Card.allConcreteCards()) {
+			assertSame(c, Card.fromCode(c.code()));
+		}
+		assertEquals(CardCode.NUMBER_OF_CONCRETE_CODES, Card.allConcreteCards().size());
+	}
+	
 }
@@ -0,0 +1,56 @@
+package jetoze.iota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CoordinateMapTest {
+
+	@Test
+	public void putGetRemove() {
+		CoordinateMap<String> map = new CoordinateMap<>();
+		assertTrue(map.isEmpty());
+		assertNull(map.put(0, 0, "a"));
+		assertNull(map.put(-1, 3, "b"));
+		assertEquals("a", map.put(0, 0, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(0, 0));
+		assertEquals("b", map.get(-1, 3));
+		assertFalse(map.containsKey(3, -1));
+		assertEquals("b", map.remove(-1, 3));
+		assertNull(map.remove(-1, 3));
+		assertEquals(1, map.size());
+	}
+	
+	@Test
+	public void behavesLikeHashMap() {
+		Random rnd = new Random(17);
+		CoordinateMap<Integer> map = new CoordinateMap<>();
+		Map<Position, Integer> expected = new HashMap<>();
+		for (int n = 0; n < 20000; ++n) {
+			int row = rnd.nextInt(21) - 10;
+			int col = rnd.nextInt(21) - 10;
+			if (rnd.nextInt(3) == 0) {
+				assertEquals(expected.remove(new Position(row, col)), map.remove(row, col));
+			} else {
+				assertEquals(expected.put(new Position(row, col), n), map.put(row, col, n));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (Map.Entry<Position, Integer> e : expected.entrySet()) {
+			assertEquals(e.getValue(), map.get(e.getKey().row, e.getKey().col));
+		}
+		CoordinateMap<Integer> copy = map.copy();
+		Map<Position, Integer> visited = new HashMap<>();
+		copy.forEach((row, col, value) -> visited.put(new Position(row, col), value));
+		assertEquals(expected, visited);
+	}
+	
+}
@@ -0,0 +1,46 @@
+package jetoze.iota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class DenseGridStorageTest {
+
+	@Test
+	public void growsInAllDirections() {
+		DenseGridStorage storage = new DenseGridStorage();
+		List<Card> cards = Card.allConcreteCards();
+		int[][] positions = {{0, 0}, {-30, 0}, {0, 41}, {25, -3}, {2, -60}, {-1, -1}};
+		for (int n = 0; n < positions.length; ++n) {
+			storage.put(positions[n][0], positions[n][1], cards.get(n));
+		}
+		assertEquals(positions.length, storage.size());
+		for (int n = 0; n < positions.length; ++n) {
+			assertSame(cards.get(n), storage.get(positions[n][0], positions[n][1]));
+		}
+		assertNull(storage.get(1, 1));
+		assertNull(storage.get(1000, -1000));
+	}
+	
+	@Test
+	public void copyIsIndependent() {
+		DenseGridStorage storage = new DenseGridStorage();
+		Card card = Card.allConcreteCards().get(0);
+		storage.put(0, 0, card);
+		GridStorage copy = storage.copy();
+		copy.put(0, 1, card);
+		storage.remove(0, 0);
+		assertTrue(storage.isEmpty());
+		assertTrue(copy.contains(0, 0));
+		assertTrue(copy.contains(0, 1));
+		assertFalse(storage.contains(0, 1));
+		assertEquals(2, copy.size());
+	}
+	
+}
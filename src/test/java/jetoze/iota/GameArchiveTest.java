@@ -0,0 +1,190 @@
+package jetoze.iota;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class GameArchiveTest {
+
+	private static List<GameLog> games;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void playGames() {
+		games = new ArrayList<>();
+		for (int n = 1; n <= 3; ++n) {
+			GameState game = GameLogTest.newGame(n);
+			GameLogTest.playGame(game);
+			games.add(game.getLog());
+		}
+	}
+
+	@Test
+	public void gamesCanBeReadInAnyOrder() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		try (GameArchive archive = GameArchive.open(file)) {
+			for (int n = 0; n < 10; ++n) {
+				assertEquals(n, archive.append(gameAt(n)));
+			}
+			assertEquals(10, archive.size());
+			for (int n = 9; n >= 0; --n) {
+				assertEquals(gameAt(n), archive.getGame(n));
+			}
+		}
+		try (GameArchive archive = GameArchive.openReadOnly(file)) {
+			assertEquals(10, archive.size());
+			assertEquals(gameAt(7), archive.getGame(7));
+			assertEquals(expectedGames(10), archive.games().collect(toList()));
+		}
+	}
+
+	@Test
+	public void gamesCanBeAppendedAfterReopening() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		try (GameArchive archive = GameArchive.open(file)) {
+			archive.append(gameAt(0));
+		}
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertEquals(1, archive.append(gameAt(1)));
+			assertEquals(expectedGames(2), archive.games().collect(toList()));
+		}
+	}
+
+	@Test
+	public void recordsAreSlicedFromTheMappedFile() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		try (GameArchive archive = GameArchive.open(file)) {
+			archive.append(gameAt(0));
+			ByteBuffer record = archive.getRecord(0);
+			assertTrue(record.isDirect());
+			assertTrue(record.isReadOnly());
+			assertEquals(gameAt(0), GameRecordReader.decode(record));
+			assertFalse(record.hasRemaining());
+		}
+	}
+
+	@Test
+	public void recordsCanCrossSegmentBoundaries() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		// Tiny segments, so that some records stick out of their segment, 
+		// while others end in the overlap.
+		try (GameArchive archive = GameArchive.open(file, false, 1024, 256)) {
+			int sliced = 0;
+			for (int n = 0; n < 20; ++n) {
+				archive.append(gameAt(n));
+				assertEquals(gameAt(n), archive.getGame(n));
+				if (archive.getRecord(n).isDirect()) {
+					++sliced;
+				}
+			}
+			assertTrue(sliced > 0 && sliced < 20);
+			assertEquals(expectedGames(20), archive.games().collect(toList()));
+		}
+	}
+
+	@Test
+	public void dataFileIsAStreamOfGameRecords() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		try (GameArchive archive = GameArchive.open(file)) {
+			for (int n = 0; n < 3; ++n) {
+				archive.append(gameAt(n));
+			}
+		}
+		try (GameRecordReader reader = new GameRecordReader(FileChannel.open(file))) {
+			for (int n = 0; n < 3; ++n) {
+				assertEquals(gameAt(n), reader.read().get());
+			}
+			assertFalse(reader.read().isPresent());
+		}
+	}
+
+	@Test
+	public void recordsMissingFromTheIndexAreDropped() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		long size;
+		try (GameArchive archive = GameArchive.open(file)) {
+			archive.append(gameAt(0));
+			size = file.toFile().length();
+		}
+		// Simulate a crash in the middle of an append.
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] {42, 1, 2}));
+		}
+		try (GameArchive archive = GameArchive.open(file)) {
+			assertEquals(size, file.toFile().length());
+			assertEquals(1, archive.append(gameAt(1)));
+			assertEquals(expectedGames(2), archive.games().collect(toList()));
+		}
+	}
+
+	@Test
+	public void interleavedReadsAndAppendsDoNotRemapEveryTime() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		try (GameArchive archive = GameArchive.open(file)) {
+			for (int n = 0; n < 100; ++n) {
+				archive.append(gameAt(n));
+				assertEquals(gameAt(n), archive.getGame(n));
+			}
+			// The mapping doubles at most every time it is remapped.
+			assertTrue(archive.getNumberOfMappings() <= 8);
+			assertEquals(expectedGames(100), archive.games().collect(toList()));
+		}
+	}
+
+	@Test
+	public void corruptRecordsAreReportedWithTheirGame() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("games");
+		long size;
+		try (GameArchive archive = GameArchive.open(file)) {
+			archive.append(gameAt(0));
+			size = file.toFile().length();
+			archive.append(gameAt(1));
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			byte[] garbage = new byte[16];
+			Arrays.fill(garbage, (byte) 0xFF);
+			channel.write(ByteBuffer.wrap(garbage), size + 4);
+		}
+		try (GameArchive archive = GameArchive.openReadOnly(file)) {
+			assertEquals(gameAt(0), archive.getGame(0));
+			try {
+				archive.games().collect(toList());
+				fail("Expected the corrupt record to be reported");
+			} catch (UncheckedIOException e) {
+				assertEquals("Corrupt record of game 1", e.getCause().getMessage());
+			}
+		}
+	}
+
+	private static GameLog gameAt(int n) {
+		return games.get(n % games.size());
+	}
+
+	private static List<GameLog> expectedGames(int count) {
+		List<GameLog> expected = new ArrayList<>();
+		for (int n = 0; n < count; ++n) {
+			expected.add(gameAt(n));
+		}
+		return expected;
+	}
+
+}
@@ -0,0 +1,174 @@
+package jetoze.iota;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public final class GameLogTest {
+
+	@Test
+	public void everyTurnIsRecorded() {
+		GameState game = newGame(1L);
+		List<Long> positions = playGame(game);
+		GameLog log = game.getLog();
+		assertEquals(positions.size() - 1, log.getNumberOfTurns());
+		assertEquals(ImmutableList.of("Alice", "Bob"), log.getPlayerNames());
+		int drawn = 2 * Constants.NUMBER_OF_CARDS_PER_PLAYER + 1;
+		for (int n = 0; n < log.getNumberOfTurns(); ++n) {
+			TurnRecord turn = log.getTurn(n);
+			assertEquals(n % 2, turn.getPlayerIndex());
+			drawn += turn.getNumberOfDrawnCards();
+			if (turn.getType() == TurnRecord.Type.PASS) {
+				drawn -= turn.getNumberOfCards();
+			}
+		}
+		assertEquals(log.getInitialDeck().length - game.getDeck().cardsLeft(), drawn);
+	}
+
+	@Test
+	public void turnsCompletedWithOtherActionsAreNotRecorded() {
+		GameState game = newGame(3L);
+		Player first = game.getActivePlayer();
+		GameAction skip = (player, grid, deck) -> {
+			player.completeTurn(0);
+			return GameAction.Result.SUCCESS;
+		};
+		assertTrue(game.completeTurn(skip).isSuccess());
+		assertEquals(0, game.getLog().getNumberOfTurns());
+		assertEquals(1, first.getPointsPerTurn().size());
+		assertTrue(game.getActivePlayer() != first);
+		assertTrue(game.completeTurn(new PassAction()).isSuccess());
+		assertEquals(1, game.getLog().getNumberOfTurns());
+		assertEquals(1, game.getLog().getTurn(0).getPlayerIndex());
+	}
+
+	@Test
+	public void replayRebuildsEveryIntermediatePosition() {
+		for (long seed = 1L; seed <= 5L; ++seed) {
+			GameState game = newGame(seed);
+			List<Long> positions = playGame(game);
+			GameLog log = game.getLog();
+			for (int n = 0; n <= log.getNumberOfTurns(); ++n) {
+				GameState validated = GameState.replay(log, n, false);
+				GameState trusted = GameState.replay(log, n, true);
+				assertEquals(positions.get(n).longValue(), validated.getPositionHash());
+				assertEquals(positions.get(n).longValue(), trusted.getPositionHash());
+				assertEquals(log.getTurns().subList(0, n), trusted.getLog().getTurns());
+			}
+			GameState replayed = GameState.replay(log);
+			assertEquals(log, replayed.getLog());
+			assertEquals(pointsOf(game), pointsOf(replayed));
+			assertEquals(game.getGameResult().isPresent(), replayed.isGameOver());
+		}
+	}
+
+	@Test
+	public void replayDetectsALogThatDoesNotMatchTheGame() {
+		GameState game = newGame(2L);
+		playGame(game);
+		GameLog log = game.getLog();
+		int n = 0;
+		while (log.getTurn(n).getType() != TurnRecord.Type.PLAY) {
+			++n;
+		}
+		TurnRecord turn = log.getTurn(n);
+		GameLog tampered = new GameLog(log.getPlayerNames(), log.getInitialDeck());
+		for (int i = 0; i < n; ++i) {
+			tampered.append(log.getTurn(i));
+		}
+		tampered.append(new TurnRecord(turn.getType(), turn.getPlayerIndex(), codesOf(turn), positionsOf(turn),
+				turn.getPoints() + 1, drawnCodesOf(turn)));
+		try {
+			GameState.replay(tampered);
+			fail("Expected the replay to fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		// A trusted replay takes the log at its word.
+		GameState trusted = GameState.replay(tampered, n + 1, true);
+		assertEquals(turn.getPoints() + 1, trusted.getPlayers().get(turn.getPlayerIndex()).getPointsPerTurn().get(n / 2).intValue());
+	}
+
+	static GameState newGame(long seed) {
+		List<Card> cards = new ArrayList<>();
+		for (int n = 0; n < Constants.NUMBER_OF_WILDCARDS; ++n) {
+			cards.add(Card.wildcard());
+		}
+		cards.addAll(Card.allConcreteCards());
+		Collections.shuffle(cards, new Random(seed));
+		GameState game = new GameState(ImmutableList.of(new Player("Alice"), new Player("Bob")), new Deck(cards));
+		game.start();
+		return game;
+	}
+
+	/**
+	 * Plays the game with a greedy strategy, until it is over or the players
+	 * are stuck.
+	 *
+	 * @return the hash of the position before the first turn and after each turn.
+	 */
+	static List<Long> playGame(GameState game) {
+		List<Long> positions = new ArrayList<>();
+		positions.add(game.getPositionHash());
+		int passesInARow = 0;
+		while (!game.isGameOver() && passesInARow < 2 * game.getNumberOfPlayers()) {
+			Player player = game.getActivePlayer();
+			Optional<LegalMove> best = game.getGrid().enumerateLegalMoves(player.getCards())
+					.max(Comparator.comparingInt(LegalMove::getPoints));
+			GameAction action;
+			if (best.isPresent()) {
+				action = best.get().getAction();
+				passesInARow = 0;
+			} else {
+				action = (game.getDeck().cardsLeft() >= player.getCards().size())
+						? new PassAction(player.getCards())
+						: new PassAction();
+				++passesInARow;
+			}
+			assertTrue(game.completeTurn(action).isSuccess());
+			positions.add(game.getPositionHash());
+		}
+		return positions;
+	}
+
+	private static List<Integer> pointsOf(GameState game) {
+		return game.getPlayers().stream().map(Player::getPoints).collect(toList());
+	}
+
+	private static int[] codesOf(TurnRecord turn) {
+		int[] codes = new int[turn.getNumberOfCards()];
+		for (int n = 0; n < codes.length; ++n) {
+			codes[n] = turn.getCardCode(n);
+		}
+		return codes;
+	}
+
+	private static long[] positionsOf(TurnRecord turn) {
+		long[] positions = new long[turn.getNumberOfCards()];
+		for (int n = 0; n < positions.length; ++n) {
+			positions[n] = turn.getPosition(n);
+		}
+		return positions;
+	}
+
+	private static int[] drawnCodesOf(TurnRecord turn) {
+		int[] codes = new int[turn.getNumberOfDrawnCards()];
+		for (int n = 0; n < codes.length; ++n) {
+			codes[n] = turn.getDrawnCardCode(n);
+		}
+		return codes;
+	}
+
+}
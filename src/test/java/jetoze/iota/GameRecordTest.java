@@ -0,0 +1,124 @@
+package jetoze.iota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public final class GameRecordTest {
+
+	@Test
+	public void gamesSurviveARoundTrip() throws IOException {
+		List<GameLog> logs = playGames(10);
+		byte[] bytes = write(logs);
+		try (GameRecordReader reader = new GameRecordReader(Channels.newChannel(new ByteArrayInputStream(bytes)))) {
+			for (GameLog log : logs) {
+				assertEquals(log, reader.read().get());
+			}
+			assertFalse(reader.read().isPresent());
+		}
+	}
+	
+	@Test
+	public void recordsAreCompact() throws IOException {
+		GameLog log = playGames(1).get(0);
+		byte[] bytes = write(Arrays.asList(log));
+		// Roughly a byte per card in the deck, plus a handful of bytes per turn.
+		int size = bytes.length - GameRecordFormat.HEADER_SIZE;
+		assertTrue(size + " bytes", size < 100 + 12 * log.getNumberOfTurns());
+	}
+	
+	@Test
+	public void recordsCanBeDecodedFromABuffer() throws IOException {
+		List<GameLog> logs = playGames(3);
+		long[] offsets = new long[logs.size()];
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GameRecordWriter writer = new GameRecordWriter(Channels.newChannel(out))) {
+			for (int n = 0; n < logs.size(); ++n) {
+				offsets[n] = writer.write(logs.get(n));
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+		for (int n = logs.size() - 1; n >= 0; --n) {
+			buffer.position((int) offsets[n]);
+			assertEquals(logs.get(n), GameRecordReader.decode(buffer));
+			int end = (n + 1 < logs.size()) ? (int) offsets[n + 1] : buffer.capacity();
+			assertEquals(end, buffer.position());
+		}
+	}
+	
+	@Test
+	public void signedVarintsRoundTrip() {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		int[] values = {0, 1, -1, 63, -64, 64, 1000, -1000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		for (int v : values) {
+			GameRecordFormat.writeVarint(buffer, GameRecordFormat.zigzag(v));
+		}
+		buffer.flip();
+		for (int v : values) {
+			assertEquals(v, GameRecordFormat.unzigzag(GameRecordFormat.readVarint(buffer)));
+		}
+	}
+	
+	@Test
+	public void truncatedStreamIsReported() throws IOException {
+		byte[] bytes = write(playGames(1));
+		byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+		try (GameRecordReader reader = new GameRecordReader(Channels.newChannel(new ByteArrayInputStream(truncated)))) {
+			reader.read();
+			fail("Expected an EOFException");
+		} catch (EOFException e) {
+			// Expected
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void streamMustStartWithAHeader() throws IOException {
+		byte[] bytes = write(playGames(1));
+		bytes[0] = 'X';
+		new GameRecordReader(Channels.newChannel(new ByteArrayInputStream(bytes)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void nonBlockingChannelsAreRejected() throws IOException {
+		Pipe pipe = Pipe.open();
+		try (Pipe.SourceChannel source = pipe.source(); Pipe.SinkChannel sink = pipe.sink()) {
+			source.configureBlocking(false);
+			new GameRecordReader(source);
+		}
+	}
+	
+	private static List<GameLog> playGames(int count) {
+		List<GameLog> logs = new ArrayList<>();
+		for (int n = 1; n <= count; ++n) {
+			GameState game = GameLogTest.newGame(n);
+			GameLogTest.playGame(game);
+			logs.add(game.getLog());
+		}
+		return logs;
+	}
+	
+	private static byte[] write(List<GameLog> logs) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GameRecordWriter writer = new GameRecordWriter(Channels.newChannel(out))) {
+			for (GameLog log : logs) {
+				writer.write(log);
+			}
+		}
+		return out.toByteArray();
+	}
+	
+}
@@ -0,0 +1,173 @@
+package jetoze.iota;
+
+import static jetoze.iota.Card.newCard;
+import static jetoze.iota.Constants.Color.BLUE;
+import static jetoze.iota.Constants.Color.RED;
+import static jetoze.iota.Constants.Color.YELLOW;
+import static jetoze.iota.Constants.Shape.CIRCLE;
+import static jetoze.iota.Constants.Shape.CROSS;
+import static jetoze.iota.Constants.Shape.SQUARE;
+import static jetoze.iota.Constants.Shape.TRIANGLE;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Benchmarks the number of bytes allocated by the card validation and the 
+ * scoring paths of the Grid, which are expected to produce no garbage at all.
+ */
+public class GridAllocationTest {
+
+	private static final int ITERATIONS = 200;
+	
+	/**
+	 * The number of bytes the runtime may allocate on the measured thread while
+	 * the measured code runs, e.g. for JIT compilation. This does not grow with
+	 * the number of iterations.
+	 */
+	private static final long MAX_NOISE_BYTES = 1024;
+	
+	@Test
+	public void isCardAllowedDoesNotAllocate() {
+		ThreadMXBean threads = threads();
+		Grid grid = createBoardWithWildcards();
+		List<Card> cards = new ArrayList<>(Card.allConcreteCards());
+		cards.add(Card.wildcard());
+		Card[] allCards = cards.toArray(new Card[cards.size()]);
+		
+		// Warm up, so that class loading and JIT compilation does not interfere
+		// with the measurement.
+		int allowed = validateAll(grid, allCards);
+		for (int n = 0; n < 10; ++n) {
+			allowed += validateAll(grid, allCards);
+		}
+		assertTrue(allowed > 0);
+		
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		int checks = 0;
+		for (int n = 0; n < ITERATIONS; ++n) {
+			checks += validateAll(grid, allCards);
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assertTrue(checks > 0);
+		// Over ITERATIONS x 65 cards x 144 positions, close to two million 
+		// calls, a single object per call, or even per thousand calls, would 
+		// blow this bound.
+		int calls = ITERATIONS * allCards.length * 12 * 12;
+		assertTrue("Validation allocated " + allocated + " bytes in " + calls + " calls", 
+				allocated <= MAX_NOISE_BYTES);
+	}
+	
+	@Test
+	public void evaluateDoesNotAllocate() {
+		ThreadMXBean threads = threads();
+		Grid grid = createBoardWithWildcards();
+		List<Card> hand = Arrays.asList(Card.wildcard(), newCard(YELLOW, CIRCLE, 2), newCard(RED, TRIANGLE, 2),
+				newCard(BLUE, TRIANGLE, 3));
+		// Lay out every legal move of the hand, and the same moves shifted one
+		// row down, most of which are not legal, so that both the scoring and
+		// the rejection of plays are measured.
+		List<Placement> placements = new ArrayList<>();
+		grid.enumerateLegalMoves(hand).forEach(m -> {
+			List<LineItem> shifted = new ArrayList<>();
+			for (LineItem item : m.getItems()) {
+				shifted.add(new LineItem(item.getCard(), item.getPosition().below()));
+			}
+			for (List<LineItem> play : Arrays.asList(m.getItems(), shifted)) {
+				Placement placement = new Placement(grid.board());
+				if (placement.lay(play)) {
+					placements.add(placement);
+				}
+			}
+		});
+		Placement[] laid = placements.toArray(new Placement[placements.size()]);
+		// The cache is filled during the warm up.
+		CrossLineCache cache = new CrossLineCache(grid.board());
+		
+		int points = 0;
+		for (int n = 0; n < 100; ++n) {
+			points += evaluateAll(laid, cache);
+		}
+		assertTrue(points > 0);
+		
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int n = 0; n < ITERATIONS * 10; ++n) {
+			points += evaluateAll(laid, cache);
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+		assertTrue(points > 0);
+		int calls = ITERATIONS * 10 * laid.length * 2;
+		assertTrue("Scoring allocated " + allocated + " bytes in " + calls + " calls", 
+				allocated <= MAX_NOISE_BYTES);
+	}
+	
+	private static ThreadMXBean threads() {
+		Object bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof ThreadMXBean);
+		ThreadMXBean threads = (ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+	
+	/**
+	 * Evaluates each placement with and without the cache, and returns the 
+	 * total number of points of the valid plays.
+	 */
+	private static int evaluateAll(Placement[] placements, CrossLineCache cache) {
+		int points = 0;
+		for (Placement placement : placements) {
+			points += Math.max(Grid.evaluate(placement), 0);
+			points += Math.max(Grid.evaluate(placement, cache), 0);
+		}
+		return points;
+	}
+	
+	private static int validateAll(Grid grid, Card[] cards) {
+		int allowed = 0;
+		for (Card card : cards) {
+			for (int row = -6; row < 6; ++row) {
+				for (int col = -6; col < 6; ++col) {
+					if (grid.isCardAllowed(card, row, col)) {
+						++allowed;
+					}
+				}
+			}
+		}
+		return allowed;
+	}
+	
+	private static Grid createBoardWithWildcards() {
+		// [B-Sq-1] - [B-Ci-4] -  [B-Cr-2]
+		//     |           |
+		// [B-Cr-3] - [Y-Ci-4] - [  WC  ]
+		//                           |
+		//                       [Y-Ci-2]
+		//                           |
+		//                       [R-Tr-2]
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		grid.addLine(
+				new LineItem(Card.wildcard(), 1, 2),
+				new LineItem(newCard(YELLOW, CIRCLE, 2), 2, 2),
+				new LineItem(newCard(RED, TRIANGLE, 2), 3, 2));
+		return grid;
+	}
+	
+}
@@ -0,0 +1,109 @@
+package jetoze.iota;
+
+import static jetoze.iota.Card.newCard;
+import static jetoze.iota.Constants.Color.BLUE;
+import static jetoze.iota.Constants.Color.GREEN;
+import static jetoze.iota.Constants.Color.YELLOW;
+import static jetoze.iota.Constants.Shape.CIRCLE;
+import static jetoze.iota.Constants.Shape.CROSS;
+import static jetoze.iota.Constants.Shape.SQUARE;
+import static jetoze.iota.Constants.Shape.TRIANGLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GridSnapshotTest {
+
+	@Test
+	public void branchesAreIndependent() {
+		// [B-Sq-1] - [B-Ci-4]
+		GridSnapshot root = GridSnapshot.empty()
+				.start(newCard(BLUE, SQUARE, 1))
+				.addLine(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1));
+		assertEquals(1 + 4, root.getPoints());
+
+		// [B-Sq-1] - [B-Ci-4] - *[B-Cr-2]*
+		GridSnapshot left = root.addLine(new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		// [B-Sq-1] - [B-Ci-4]
+		//               |
+		//           *[Y-Ci-4]*
+		GridSnapshot right = root.addLine(new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		
+		assertEquals(2, root.getNumberOfCards());
+		assertEquals(3, left.getNumberOfCards());
+		assertEquals(3, right.getNumberOfCards());
+		assertEquals(1 + 4 + 2, left.getPoints());
+		assertEquals(4 + 4, right.getPoints());
+		assertNull(root.getCard(0, 2));
+		assertNull(right.getCard(0, 2));
+		assertSame(newCard(BLUE, CROSS, 2), left.getCard(0, 2));
+		assertTrue(root.isCardAllowed(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		assertFalse(right.isCardAllowed(newCard(YELLOW, CIRCLE, 4), 1, 1));
+	}
+	
+	@Test
+	public void invalidLineLeavesSnapshotUntouched() {
+		GridSnapshot snapshot = GridSnapshot.empty().start(newCard(BLUE, SQUARE, 1));
+		try {
+			snapshot.addLine(new LineItem(newCard(GREEN, TRIANGLE, 3), 2, 4));
+			fail();
+		} catch (InvalidLineException e) {
+			assertEquals(1, snapshot.getNumberOfCards());
+		}
+	}
+	
+	@Test
+	public void convertToAndFromGrid() {
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1));
+		GridSnapshot snapshot = GridSnapshot.of(grid);
+		grid.addLine(new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		assertEquals(2, snapshot.getNumberOfCards());
+		
+		Grid copy = snapshot.toGrid();
+		assertEquals(2, copy.getNumberOfCards());
+		assertEquals(1 + 4 + 2, copy.addLine(new LineItem(newCard(BLUE, CROSS, 2), 0, 2)));
+	}
+	
+	@Test
+	public void storageBehavesLikeHashedStorage() {
+		Random rnd = new Random(5);
+		PersistentGridStorage persistent = new PersistentGridStorage();
+		HashGridStorage expected = new HashGridStorage();
+		PersistentGridStorage frozen = null;
+		for (int n = 0; n < 5000; ++n) {
+			int row = rnd.nextInt(41) - 20;
+			int col = rnd.nextInt(41) - 20;
+			if (rnd.nextBoolean()) {
+				persistent.remove(row, col);
+				expected.remove(row, col);
+			} else {
+				Card card = Card.allConcreteCards().get(rnd.nextInt(CardCode.NUMBER_OF_CONCRETE_CODES));
+				persistent.put(row, col, card);
+				expected.put(row, col, card);
+			}
+			if (n == 2500) {
+				frozen = persistent.copy();
+				assertEquals(expected.size(), frozen.size());
+			}
+			assertEquals(expected.size(), persistent.size());
+		}
+		for (int row = -20; row <= 20; ++row) {
+			for (int col = -20; col <= 20; ++col) {
+				assertSame(expected.get(row, col), persistent.get(row, col));
+			}
+		}
+		int[] count = new int[1];
+		frozen.forEach((row, col, card) -> ++count[0]);
+		assertEquals(frozen.size(), count[0]);
+	}
+	
+}
@@ -1,6 +1,8 @@
 package jetoze.iota;
 
 import static com.google.common.base.Preconditions.checkState;
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.toList;
 import static jetoze.iota.Card.newCard;
 import static jetoze.iota.Constants.Color.BLUE;
 import static jetoze.iota.Constants.Color.GREEN;
@@ -12,14 +14,27 @@ import static jetoze.iota.Constants.Shape.SQUARE;
 import static jetoze.iota.Constants.Shape.TRIANGLE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
 import jetoze.iota.Constants.Color;
 import jetoze.iota.Constants.Shape;
 
@@ -323,6 +338,33 @@ public class GridTest {
 		}
 	}
 	
+	@Test
+	public void cardsMustFormAContiguousLine() {
+		// [B-Sq-1] - [B-Ci-4]
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1));
+		
+		// The following should not be allowed, since there is a gap in the line.
+		// *[B-Cr-2]* - [B-Sq-1] - [B-Ci-4] - [      ] - *[B-Tr-3]*
+		try {
+			grid.addLine(
+					new LineItem(newCard(BLUE, TRIANGLE, 3), 0, 3),
+					new LineItem(newCard(BLUE, CROSS, 2), 0, -1));
+			fail();
+		} catch (InvalidLineException e) {
+			assertEquals(2, grid.getNumberOfCards());
+		}
+		
+		// Cards on the grid can fill the gaps, though.
+		// *[B-Cr-2]* - [B-Sq-1] - [B-Ci-4] - *[B-Tr-3]*
+		int expectedPoints = (2 + 1 + 4 + 3) * 2 /*one lot*/;
+		int actualPoints = grid.addLine(
+				new LineItem(newCard(BLUE, TRIANGLE, 3), 0, 2),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, -1));
+		assertEquals(expectedPoints, actualPoints);
+	}
+	
 	@Test
 	public void lineCanBeAddedToFromBothSides() {
 		// [B-Sq-1]
@@ -386,7 +428,518 @@ public class GridTest {
 		assertEquals(expectedPoints, actualPoints);
 	}
 	
+	@Test
+	public void denseAndHashedGridsAreEquivalent() {
+		for (Grid grid : new Grid[] { Grid.newDenseGrid(), Grid.newHashedGrid() }) {
+			grid.start(newCard(BLUE, SQUARE, 1));
+			assertEquals(4 + 3, grid.addLine(
+					new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+					new LineItem(newCard(BLUE, CROSS, 2), 0, 2)));
+			Grid clone = grid.clone();
+			assertEquals((3 + 4) + (1 + 3) + (4 + 4), clone.addLine(
+					new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+					new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1)));
+			assertEquals(3, grid.getNumberOfCards());
+			assertEquals(5, clone.getNumberOfCards());
+			assertFalse(grid.isCardAllowed(newCard(GREEN, TRIANGLE, 3), 0, 3));
+			assertTrue(grid.isCardAllowed(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		}
+	}
+	
+	@Test
+	public void applyAndUndo() {
+		// [B-Sq-1] - [B-Ci-4]
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1));
+		
+		// [B-Sq-1] - [B-Ci-4] - *[B-Cr-2]*
+		Grid.UndoToken first = grid.apply(Arrays.asList(new LineItem(newCard(BLUE, CROSS, 2), 0, 2)));
+		assertEquals(1 + 4 + 2, first.getPoints());
+		assertEquals(3, grid.getNumberOfCards());
+		
+		//  [B-Sq-1] -  [B-Ci-4] - [B-Cr-2]
+		//     |           |
+		// *[B-Cr-3] - *[Y-Ci-4]*
+		Grid.UndoToken second = grid.apply(Arrays.asList(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1)));
+		assertEquals((3 + 4) + (1 + 3) + (4 + 4), second.getPoints());
+		assertEquals(5, grid.getNumberOfCards());
+		
+		try {
+			grid.undo(first);
+			fail("Lines must be undone in reverse order");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		grid.undo(second);
+		grid.undo(first);
+		assertEquals(2, grid.getNumberOfCards());
+		assertTrue(grid.isCardAllowed(newCard(BLUE, CROSS, 2), 0, 2));
+		assertFalse(grid.isCardAllowed(newCard(YELLOW, CIRCLE, 4), 1, 2));
+		
+		// Applying the same line again yields the same points.
+		assertEquals(1 + 4 + 2, grid.addLine(new LineItem(newCard(BLUE, CROSS, 2), 0, 2)));
+	}
+	
+	@Test
+	public void addLineMakesAppliedLinesPermanent() {
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		Grid.UndoToken token = grid.apply(Arrays.asList(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1)));
+		grid.addLine(new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		try {
+			grid.undo(token);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals(3, grid.getNumberOfCards());
+		}
+	}
 	
+	@Test
+	public void zobristHashDependsOnlyOnTheCardsOnTheGrid() {
+		Grid grid1 = new Grid();
+		grid1.start(newCard(BLUE, SQUARE, 1));
+		long startHash = grid1.getZobristHash();
+		grid1.addLine(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1));
+		grid1.addLine(new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		
+		Grid grid2 = Grid.newHashedGrid();
+		grid2.start(newCard(BLUE, SQUARE, 1));
+		grid2.addLine(
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2),
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1));
+		assertEquals(grid1.getZobristHash(), grid2.getZobristHash());
+		assertEquals(grid1.getZobristHash(), grid1.clone().getZobristHash());
+		assertEquals(grid1.getZobristHash(), GridSnapshot.of(grid1).toGrid().getZobristHash());
+		
+		Grid grid3 = new Grid();
+		grid3.start(newCard(BLUE, SQUARE, 1));
+		Grid.UndoToken token = grid3.apply(Arrays.asList(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1)));
+		assertFalse(startHash == grid3.getZobristHash());
+		grid3.undo(token);
+		assertEquals(startHash, grid3.getZobristHash());
+		
+		// Same cards, different positions
+		grid3.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, -1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, -2));
+		assertFalse(grid1.getZobristHash() == grid3.getZobristHash());
+	}
+	
+	@Test
+	public void openCellsAreMaintainedAsLinesAreAdded() {
+		Grid grid = new Grid();
+		assertEquals(Arrays.asList(new Position(0, 0)), positionsOf(grid.getOpenCells()));
+		assertOpenCellsMatchIsCardAllowed(grid);
+		
+		grid.start(newCard(BLUE, SQUARE, 1));
+		assertOpenCellsMatchIsCardAllowed(grid);
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		assertOpenCellsMatchIsCardAllowed(grid);
+		grid.addLine(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		assertOpenCellsMatchIsCardAllowed(grid);
+		Grid clone = grid.clone();
+		
+		// The wildcard constrains the open cells at the ends of both its lines.
+		Grid.UndoToken token = grid.apply(Arrays.asList(
+				new LineItem(Card.wildcard(), 1, 2),
+				new LineItem(newCard(YELLOW, CIRCLE, 2), 2, 2)));
+		assertOpenCellsMatchIsCardAllowed(grid);
+		assertFalse(grid.getOpenCell(1, 2).isPresent());
+		assertTrue(grid.getOpenCell(3, 2).get().isAllowed(newCard(RED, TRIANGLE, 2)));
+		assertFalse(grid.getOpenCell(3, 2).get().isAllowed(newCard(RED, TRIANGLE, 3)));
+		
+		grid.undo(token);
+		assertOpenCellsMatchIsCardAllowed(grid);
+		assertEquals(positionsOf(clone.getOpenCells()), positionsOf(grid.getOpenCells()));
+		assertEquals(clone.getOpenCells(), grid.getOpenCells());
+		assertEquals(grid.getOpenCells(), GridSnapshot.of(grid).toGrid().getOpenCells());
+	}
+	
+	@Test
+	public void enumerateLegalMovesFindsAllDistinctMoves() {
+		//  [B-Sq-1] -  [B-Ci-4] - [B-Cr-2]
+		//     |           |
+		//  [B-Cr-3] -  [Y-Ci-4]
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		
+		List<Card> hand = Arrays.asList(Card.wildcard(), newCard(YELLOW, CIRCLE, 2), newCard(RED, TRIANGLE, 2));
+		assertEquals(bruteForceMoves(grid, hand), enumeratedMoves(grid, hand));
+		
+		// Two identical wildcards do not produce duplicate moves.
+		hand = Arrays.asList(Card.wildcard(), newCard(GREEN, SQUARE, 4), Card.wildcard());
+		assertEquals(bruteForceMoves(grid, hand), enumeratedMoves(grid, hand));
+		assertEquals(5, grid.getNumberOfCards());
+	}
+	
+	@Test
+	public void enumerateLegalMovesDoesNotModifyTheGrid() {
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1));
+		List<Card> hand = Arrays.asList(Card.wildcard(), newCard(BLUE, CROSS, 2), newCard(RED, SQUARE, 3));
+		ImmutableList<Position> legalCells = grid.legalCellsFor(hand.get(1));
+		int modificationCount = grid.getModificationCount();
+		assertTrue(grid.enumerateLegalMoves(hand).count() > 0);
+		assertEquals(modificationCount, grid.getModificationCount());
+		// Derived information is still valid.
+		assertSame(legalCells, grid.legalCellsFor(hand.get(1)));
+	}
+	
+	@Test
+	public void enumerateLegalMovesOnEmptyGrid() {
+		Grid grid = new Grid();
+		List<Card> hand = Arrays.asList(newCard(BLUE, SQUARE, 1), newCard(BLUE, CIRCLE, 4));
+		Map<String, Integer> moves = enumeratedMoves(grid, hand);
+		assertEquals(bruteForceMoves(grid, hand), moves);
+		// Each card on its own in origo, and both cards in two orientations,
+		// in two orders, with either card in origo.
+		assertEquals(2 + 2 * 2 * 2, moves.size());
+	}
+	
+	@Test
+	public void legalMovesDoNotDependOnTheOrderOfTheOpenCells() {
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		List<Card> hand = Arrays.asList(Card.wildcard(), newCard(BLUE, TRIANGLE, 3), newCard(RED, SQUARE, 3));
+		MoveGenerator generator = new MoveGenerator(grid.board(), hand);
+		List<OpenCell> openCells = new ArrayList<>(grid.getOpenCells());
+		List<LegalMove> moves = movesOf(generator, openCells);
+		// The single card moves come from the anchors in the open cells. 
+		assertTrue(moves.stream().anyMatch(m -> m.getItems().size() == 1));
+		List<String> expected = moves.stream().map(Object::toString).collect(toList());
+		assertEquals(expected, grid.enumerateLegalMoves(hand).map(Object::toString).collect(toList()));
+		Collections.reverse(openCells);
+		assertEquals(expected, movesOf(generator, openCells).stream().map(Object::toString).collect(toList()));
+	}
+	
+	private static List<LegalMove> movesOf(MoveGenerator generator, List<OpenCell> openCells) {
+		List<LegalMove> moves = new ArrayList<>();
+		generator.generateLazily(generator.anchors(openCells)).forEachRemaining(moves::add);
+		return moves;
+	}
+	
+	@Test
+	public void parallelEnumerationMatchesSequentialEnumeration() {
+		// Build a larger grid by repeatedly playing the best move of a hand
+		// filled in card code order.
+		Grid grid = new Grid();
+		Iterator<Card> cards = Card.allConcreteCards().iterator();
+		grid.start(cards.next());
+		List<Card> hand = new ArrayList<>(Arrays.asList(Card.wildcard(), cards.next(), cards.next(), Card.wildcard()));
+		for (int turn = 0; turn < 12; ++turn) {
+			Optional<LegalMove> best = grid.enumerateLegalMoves(hand).max(comparingInt(LegalMove::getPoints));
+			if (!best.isPresent()) {
+				hand.set(0, cards.next());
+				continue;
+			}
+			grid.addLine(best.get().getItems());
+			for (LineItem item : best.get().getItems()) {
+				hand.remove(item.getCard());
+				hand.add(cards.next());
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (List<Card> h : Arrays.asList(hand, Arrays.asList(Card.wildcard(), hand.get(1), hand.get(2), Card.wildcard()))) {
+				List<String> expected = grid.enumerateLegalMoves(h).map(Object::toString).collect(toList());
+				int modificationCount = grid.getModificationCount();
+				List<String> actual = grid.enumerateLegalMovesInParallel(h, pool).map(Object::toString).collect(toList());
+				assertFalse(expected.isEmpty());
+				assertEquals(expected, actual);
+				assertEquals(modificationCount, grid.getModificationCount());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void validateBatchMatchesAddLine() throws Exception {
+		//  [B-Sq-1] -  [B-Ci-4] - [B-Cr-2]
+		//     |           |
+		//  [B-Cr-3] -  [Y-Ci-4]
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		
+		// All legal moves of a hand, and the same moves shifted one row down,
+		// most of which are not legal.
+		List<Card> hand = Arrays.asList(Card.wildcard(), newCard(YELLOW, CIRCLE, 2), newCard(RED, TRIANGLE, 2));
+		List<List<LineItem>> plays = new ArrayList<>();
+		grid.enumerateLegalMoves(hand).forEach(m -> {
+			plays.add(m.getItems());
+			List<LineItem> shifted = new ArrayList<>();
+			for (LineItem item : m.getItems()) {
+				shifted.add(new LineItem(item.getCard(), item.getPosition().below()));
+			}
+			plays.add(shifted);
+		});
+		int[] expected = new int[plays.size()];
+		for (int n = 0; n < expected.length; ++n) {
+			try {
+				expected[n] = grid.clone().addLine(plays.get(n));
+			} catch (InvalidLineException e) {
+				expected[n] = -1;
+			}
+		}
+		assertTrue(Arrays.stream(expected).anyMatch(p -> p == -1));
+		assertTrue(Arrays.equals(expected, grid.validateBatch(plays)));
+		assertEquals(5, grid.getNumberOfCards());
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<int[]>> results = new ArrayList<>();
+			for (int n = 0; n < 8; ++n) {
+				results.add(executor.submit(() -> grid.validateBatch(plays)));
+			}
+			for (Future<int[]> r : results) {
+				assertTrue(Arrays.equals(expected, r.get()));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static Map<String, Integer> enumeratedMoves(Grid grid, List<Card> hand) {
+		Map<String, Integer> moves = new HashMap<>();
+		grid.enumerateLegalMoves(hand).forEach(m -> {
+			Integer previous = moves.put(keyOf(m.getItems()), m.getPoints());
+			assertEquals("Duplicate move: " + m, null, previous);
+			assertEquals(m.getPoints(), grid.clone().addLine(m.getAction().getCardsToPlay()));
+		});
+		return moves;
+	}
+	
+	private static Map<String, Integer> bruteForceMoves(Grid grid, List<Card> hand) {
+		Map<String, Integer> moves = new HashMap<>();
+		for (List<Card> cards : permutationsOfSubsets(hand)) {
+			for (Orientation o : Orientation.values()) {
+				for (int line = -5; line <= 5; ++line) {
+					for (List<Integer> steps : combinations(11, cards.size())) {
+						List<LineItem> items = new ArrayList<>();
+						for (int n = 0; n < cards.size(); ++n) {
+							int step = steps.get(n) - 5;
+							items.add(o == Orientation.HORIZONTAL
+									? new LineItem(cards.get(n), line, step)
+									: new LineItem(cards.get(n), step, line));
+						}
+						if (!isContiguous(grid, items, o, steps)) {
+							continue;
+						}
+						try {
+							int points = grid.clone().addLine(items);
+							moves.put(keyOf(items), points);
+						} catch (InvalidLineException e) {
+							// not a legal move
+						}
+					}
+				}
+			}
+		}
+		return moves;
+	}
+	
+	private static boolean isContiguous(Grid grid, List<LineItem> items, Orientation o, List<Integer> steps) {
+		Position first = items.get(0).getPosition();
+		for (int step = steps.get(0) + 1; step < steps.get(steps.size() - 1); ++step) {
+			int d = step - steps.get(0);
+			int row = first.row + d * o.rowStep();
+			int col = first.col + d * o.colStep();
+			if (!steps.contains(step) && !isOccupied(grid, row, col)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static List<List<Card>> permutationsOfSubsets(List<Card> cards) {
+		List<List<Card>> result = new ArrayList<>();
+		for (int n = 0; n < cards.size(); ++n) {
+			List<Card> remaining = new ArrayList<>(cards);
+			Card first = remaining.remove(n);
+			result.add(Arrays.asList(first));
+			for (List<Card> rest : permutationsOfSubsets(remaining)) {
+				List<Card> list = new ArrayList<>();
+				list.add(first);
+				list.addAll(rest);
+				result.add(list);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns all increasing sequences of k numbers in [0, n).
+	 */
+	private static List<List<Integer>> combinations(int n, int k) {
+		List<List<Integer>> result = new ArrayList<>();
+		if (k == 0) {
+			result.add(new ArrayList<>());
+			return result;
+		}
+		for (List<Integer> prefix : combinations(n, k - 1)) {
+			int start = prefix.isEmpty() ? 0 : prefix.get(prefix.size() - 1) + 1;
+			for (int i = start; i < n; ++i) {
+				List<Integer> c = new ArrayList<>(prefix);
+				c.add(i);
+				result.add(c);
+			}
+		}
+		return result;
+	}
+	
+	private static String keyOf(List<LineItem> items) {
+		List<String> keys = new ArrayList<>();
+		for (LineItem item : items) {
+			keys.add(item.getPosition() + "=" + item.getCard());
+		}
+		Collections.sort(keys);
+		return keys.toString();
+	}
+	
+	@Test
+	public void wildcardDomainsAreNarrowedAsCardsJoinTheirLines() {
+		//  [B-Sq-1] -  [B-Ci-4] - [B-Cr-2]
+		//     |           |
+		//  [B-Cr-3] -  [Y-Ci-4] - *[  WC  ]*
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		assertFalse(grid.getWildcardDomain(1, 2).isPresent());
+		grid.addLine(new LineItem(Card.wildcard(), 1, 2));
+		assertFalse(grid.getWildcardDomain(1, 1).isPresent());
+		
+		// Anything that is different from [B-Cr-3] and [Y-Ci-4]
+		CardSet differentFromHorizontalLine = CardSet.of(
+				newCard(RED, SQUARE, 1), newCard(RED, SQUARE, 2), newCard(RED, TRIANGLE, 1), newCard(RED, TRIANGLE, 2),
+				newCard(GREEN, SQUARE, 1), newCard(GREEN, SQUARE, 2), newCard(GREEN, TRIANGLE, 1), newCard(GREEN, TRIANGLE, 2));
+		assertEquals(differentFromHorizontalLine, grid.getWildcardDomain(1, 2).get());
+		
+		//  [B-Sq-1] -  [B-Ci-4] - [B-Cr-2]
+		//     |           |          |
+		//  [B-Cr-3] -  [Y-Ci-4] - [  WC  ]
+		//                            |
+		//                        *[Y-Ci-2]*
+		Grid.UndoToken token = grid.apply(Arrays.asList(new LineItem(newCard(YELLOW, CIRCLE, 2), 2, 2)));
+		CardSet twos = CardSet.of(
+				newCard(RED, SQUARE, 2), newCard(RED, TRIANGLE, 2), 
+				newCard(GREEN, SQUARE, 2), newCard(GREEN, TRIANGLE, 2));
+		assertEquals(twos, grid.getWildcardDomain(1, 2).get());
+		assertEquals(twos, grid.clone().getWildcardDomain(1, 2).get());
+		assertEquals(twos, GridSnapshot.of(grid).toGrid().getWildcardDomain(1, 2).get());
+		
+		grid.undo(token);
+		assertEquals(differentFromHorizontalLine, grid.getWildcardDomain(1, 2).get());
+	}
+	
+	@Test
+	public void legalCellsForCardsAreCachedUntilTheGridChanges() {
+		//  [B-Sq-1] -  [B-Ci-4] - [B-Cr-2]
+		//     |           |
+		//  [B-Cr-3] -  [Y-Ci-4]
+		Grid grid = new Grid();
+		assertEquals(Arrays.asList(new Position(0, 0)), grid.legalCellsFor(Card.wildcard()));
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		
+		Card wildcard = Card.wildcard();
+		List<Card> hand = Arrays.asList(newCard(YELLOW, CIRCLE, 2), wildcard, newCard(RED, TRIANGLE, 2));
+		Map<Card, ImmutableList<Position>> legalCells = grid.legalCellsFor(hand);
+		assertEquals(hand, new ArrayList<>(legalCells.keySet()));
+		for (Card card : hand) {
+			assertEquals(legalCellsByProbing(grid, card), legalCells.get(card));
+			assertSame(legalCells.get(card), grid.legalCellsFor(card));
+		}
+		
+		int modificationCount = grid.getModificationCount();
+		grid.addLine(new LineItem(wildcard, 1, 2));
+		assertTrue(grid.getModificationCount() > modificationCount);
+		for (Card card : hand) {
+			assertEquals(legalCellsByProbing(grid, card), grid.legalCellsFor(card));
+		}
+	}
+	
+	private static List<Position> legalCellsByProbing(Grid grid, Card card) {
+		List<Position> cells = new ArrayList<>();
+		for (int row = -6; row <= 6; ++row) {
+			for (int col = -6; col <= 6; ++col) {
+				if (grid.isCardAllowed(card, row, col)) {
+					cells.add(new Position(row, col));
+				}
+			}
+		}
+		assertFalse(cells.isEmpty());
+		return cells;
+	}
+	
+	private static List<Position> positionsOf(List<OpenCell> cells) {
+		List<Position> positions = new ArrayList<>();
+		for (OpenCell c : cells) {
+			positions.add(c.getPosition());
+		}
+		return positions;
+	}
+	
+	private static void assertOpenCellsMatchIsCardAllowed(Grid grid) {
+		List<OpenCell> expected = new ArrayList<>();
+		for (int row = -6; row <= 6; ++row) {
+			for (int col = -6; col <= 6; ++col) {
+				List<Card> allowed = new ArrayList<>();
+				for (Card card : Card.allConcreteCards()) {
+					if (grid.isCardAllowed(card, row, col)) {
+						allowed.add(card);
+					}
+				}
+				boolean wildcardAllowed = grid.isCardAllowed(Card.wildcard(), row, col);
+				boolean occupied = isOccupied(grid, row, col);
+				boolean adjacent = isOccupied(grid, row - 1, col) || isOccupied(grid, row + 1, col) ||
+						isOccupied(grid, row, col - 1) || isOccupied(grid, row, col + 1);
+				if ((grid.getNumberOfCards() == 0 && row == 0 && col == 0) || (!occupied && adjacent)) {
+					expected.add(new OpenCell(new Position(row, col), CardSet.copyOf(allowed), wildcardAllowed));
+				}
+			}
+		}
+		assertEquals(expected, grid.getOpenCells());
+	}
+	
+	private static boolean isOccupied(Grid grid, int row, int col) {
+		boolean[] found = new boolean[1];
+		grid.forEachCard((r, c, card) -> found[0] |= (r == row && c == col));
+		return found[0];
+	}
+		
 	/**
 	 * Utility class that builds a line left-to-right or top-to-bottom.
 	 */
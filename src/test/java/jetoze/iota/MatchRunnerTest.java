@@ -0,0 +1,73 @@
+package jetoze.iota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public final class MatchRunnerTest {
+
+	@Test
+	public void everyGameIsAccountedFor() throws InterruptedException {
+		MatchRunner runner = new MatchRunner(ImmutableList.of(new GreedyPlayer(), new GreedyPlayer()));
+		MatchReport report = runner.run(12, 42L, 3);
+		assertEquals(12, report.getNumberOfGames());
+		assertEquals(12, report.getWins(0) + report.getWins(1) + report.getTies() + report.getStalemates());
+		assertTrue(report.getNumberOfTurns() >= 12);
+		assertTrue(report.getGamesPerSecond() > 0.0);
+		assertTrue(report.getTurnLatencyPercentile(0) <= report.getTurnLatencyPercentile(50));
+		assertTrue(report.getTurnLatencyPercentile(50) <= report.getTurnLatencyPercentile(99));
+		assertTrue(report.getTurnLatencyPercentile(99) <= report.getTurnLatencyPercentile(100));
+	}
+
+	@Test
+	public void outcomeDoesNotDependOnTheNumberOfThreads() throws InterruptedException {
+		MatchRunner runner = new MatchRunner(ImmutableList.of(new GreedyPlayer(), new GreedyPlayer(), new GreedyPlayer()));
+		MatchReport sequential = runner.run(6, 7L, 1);
+		MatchReport parallel = runner.run(6, 7L, 4);
+		assertEquals(sequential.getNumberOfTurns(), parallel.getNumberOfTurns());
+		for (int n = 0; n < 3; ++n) {
+			assertEquals(sequential.getWins(n), parallel.getWins(n));
+		}
+		assertEquals(sequential.getTies(), parallel.getTies());
+		assertEquals(sequential.getStalemates(), parallel.getStalemates());
+	}
+
+	@Test
+	public void workersAreCancelledWhenTheCallerIsInterrupted() throws InterruptedException {
+		AutomatedPlayer slow = game -> {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new GreedyPlayer().nextAction(game);
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Thread.currentThread().interrupt();
+			new MatchRunner(ImmutableList.of(slow, slow)).run(1000, 1L, executor, 2);
+			fail("Expected an InterruptedException");
+		} catch (InterruptedException e) {
+			// Expected
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void invalidActionsFailTheRun() throws InterruptedException {
+		AutomatedPlayer cheater = game -> new PlayLineAction(ImmutableList.of(
+				new LineItem(game.getActivePlayer().getCards().get(0), new Position(0, 0))));
+		new MatchRunner(ImmutableList.of(cheater, cheater)).run(1, 1L, 1);
+	}
+
+}
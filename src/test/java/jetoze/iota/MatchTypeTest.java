@@ -1,6 +1,7 @@
 package jetoze.iota;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -32,8 +33,8 @@ public class MatchTypeTest {
 				expected.add(Card.newCard(Color.BLUE, s, fv));
 			}
 		}
-		Set<Card> actual = MatchType.SAME.collectCandidatesForNextCard(line);
-		assertEquals(expected, actual);
+		CardSet actual = MatchType.SAME.collectCandidatesForNextCard(line);
+		assertEquals(CardSet.copyOf(expected), actual);
 		
 		line = Arrays.asList(
 				Card.newCard(Color.BLUE, Shape.SQUARE, 1),
@@ -52,7 +53,7 @@ public class MatchTypeTest {
 			}
 		}
 		actual = MatchType.SAME.collectCandidatesForNextCard(line);
-		assertEquals(expected, actual);
+		assertEquals(CardSet.copyOf(expected), actual);
 
 		// Adding a wildcard to the line should not change the result.
 		line = Arrays.asList(
@@ -62,7 +63,7 @@ public class MatchTypeTest {
 		// Expected result is any card that's blue, or has the facevalue 1, because 
 		// both those properties are common.
 		actual = MatchType.SAME.collectCandidatesForNextCard(line);
-		assertEquals(expected, actual);
+		assertEquals(CardSet.copyOf(expected), actual);
 
 		line = Arrays.asList(
 				Card.newCard(Color.BLUE, Shape.SQUARE, 1),
@@ -85,21 +86,21 @@ public class MatchTypeTest {
 				expected.add(Card.newCard(c, s, 3));
 			}
 		}
-		Set<Card> actual = MatchType.DIFFERENT.collectCandidatesForNextCard(line);
-		assertEquals(expected, actual);
+		CardSet actual = MatchType.DIFFERENT.collectCandidatesForNextCard(line);
+		assertEquals(CardSet.copyOf(expected), actual);
 		
 		// Adding a wildcard to the line should not change the result.
 		line.add(Card.wildcard());
 		// Expected result is any card that's blue, or has the facevalue 1, because 
 		// both those properties are common.
 		actual = MatchType.DIFFERENT.collectCandidatesForNextCard(line);
-		assertEquals(expected, actual);
+		assertEquals(CardSet.copyOf(expected), actual);
 
 		// Collapse the number of choices to a single card
 		line.add(Card.newCard(Color.RED, Shape.CROSS, 2));
 		expected = Collections.singleton(Card.newCard(Color.YELLOW, Shape.TRIANGLE, 3));
 		actual = MatchType.DIFFERENT.collectCandidatesForNextCard(line);
-		assertEquals(expected, actual);
+		assertEquals(CardSet.copyOf(expected), actual);
 		
 		line.add(Card.newCard(Color.YELLOW, Shape.TRIANGLE, 3));
 		assertTrue(MatchType.DIFFERENT.collectCandidatesForNextCard(line).isEmpty());
@@ -110,8 +111,8 @@ public class MatchTypeTest {
 	public void collectCandidatesForNextCardForEITHER() {
 		List<Card> line = Lists.newArrayList(Card.newCard(Color.BLUE, Shape.SQUARE, 1));
 		// Expected result is any card.
-		Set<Card> expected = Card.createPossibleCards(Constants.collectAllCardProperties());
-		Set<Card> actual = MatchType.EITHER.collectCandidatesForNextCard(line);
+		CardSet expected = CardSet.copyOf(Card.createPossibleCards(Constants.collectAllCardProperties()));
+		CardSet actual = MatchType.EITHER.collectCandidatesForNextCard(line);
 		assertEquals(expected, actual);
 		
 		// Adding a wildcard to the line should not change the result.
@@ -121,4 +122,43 @@ public class MatchTypeTest {
 		actual = MatchType.EITHER.collectCandidatesForNextCard(line);
 		assertEquals(expected, actual);
 	}
+
+	@Test
+	public void deduce() {
+		assertEquals(MatchType.SAME, deduce(
+				Card.newCard(Color.BLUE, Shape.SQUARE, 1),
+				Card.wildcard(),
+				Card.newCard(Color.BLUE, Shape.CIRCLE, 4)));
+		assertEquals(MatchType.DIFFERENT, deduce(
+				Card.newCard(Color.BLUE, Shape.SQUARE, 1),
+				Card.newCard(Color.GREEN, Shape.CIRCLE, 4),
+				Card.wildcard()));
+		assertEquals(MatchType.EITHER, deduce(
+				Card.wildcard(),
+				Card.newCard(Color.GREEN, Shape.CIRCLE, 4)));
+		assertNull(deduce(
+				Card.newCard(Color.BLUE, Shape.SQUARE, 1),
+				Card.newCard(Color.BLUE, Shape.CIRCLE, 4),
+				Card.newCard(Color.GREEN, Shape.CROSS, 2)));
+		assertNull(deduce(
+				Card.wildcard(),
+				Card.wildcard(),
+				Card.wildcard(),
+				Card.wildcard(),
+				Card.wildcard()));
+	}
+	
+	private static MatchType deduce(Card... line) {
+		int numberOfConcreteCards = 0;
+		int commonProperties = CardCode.ALL_PROPERTIES;
+		int allProperties = 0;
+		for (Card c : line) {
+			if (!c.isWildcard()) {
+				commonProperties &= CardCode.propertyMask(c.code());
+				allProperties |= CardCode.propertyMask(c.code());
+				++numberOfConcreteCards;
+			}
+		}
+		return MatchType.deduce(line.length, numberOfConcreteCards, commonProperties, allProperties);
+	}
 }
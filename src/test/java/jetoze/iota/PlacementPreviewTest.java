@@ -0,0 +1,91 @@
+package jetoze.iota;
+
+import static jetoze.iota.Card.newCard;
+import static jetoze.iota.Constants.Color.BLUE;
+import static jetoze.iota.Constants.Color.RED;
+import static jetoze.iota.Constants.Color.YELLOW;
+import static jetoze.iota.Constants.Shape.CIRCLE;
+import static jetoze.iota.Constants.Shape.CROSS;
+import static jetoze.iota.Constants.Shape.SQUARE;
+import static jetoze.iota.Constants.Shape.TRIANGLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PlacementPreviewTest {
+
+	@Test
+	public void valueIsUpdatedAsCardsAreAddedAndRemoved() {
+		//  [B-Sq-1] -  [B-Ci-4] - [B-Cr-2]
+		//     |           |
+		//  [B-Cr-3] -  [Y-Ci-4]
+		Grid grid = new Grid();
+		grid.start(newCard(BLUE, SQUARE, 1));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CIRCLE, 4), 0, 1),
+				new LineItem(newCard(BLUE, CROSS, 2), 0, 2));
+		grid.addLine(
+				new LineItem(newCard(BLUE, CROSS, 3), 1, 0),
+				new LineItem(newCard(YELLOW, CIRCLE, 4), 1, 1));
+		int modificationCount = grid.getModificationCount();
+		
+		PlacementPreview preview = new PlacementPreview(grid);
+		assertFalse(preview.isValid());
+		assertEquals(0, preview.getValue());
+		
+		List<LineItem> items = new ArrayList<>();
+		LineItem wildcard = new LineItem(Card.wildcard(), 1, 2);
+		LineItem yellowCircle = new LineItem(newCard(YELLOW, CIRCLE, 2), 2, 2);
+		LineItem redTriangle = new LineItem(newCard(RED, TRIANGLE, 2), 3, 2);
+		
+		// Start at the bottom, which is not connected to anything.
+		add(preview, items, redTriangle);
+		assertFalse(preview.isValid());
+		add(preview, items, wildcard);
+		assertFalse(preview.isValid());
+		add(preview, items, yellowCircle);
+		assertTrue(preview.isValid());
+		assertValue(grid, items, preview);
+		
+		remove(preview, items, redTriangle);
+		assertValue(grid, items, preview);
+		remove(preview, items, wildcard);
+		assertFalse(preview.isValid());
+		add(preview, items, wildcard);
+		assertValue(grid, items, preview);
+		
+		preview.clear();
+		assertEquals(0, preview.getNumberOfCards());
+		assertEquals(0, preview.getValue());
+		assertEquals(modificationCount, grid.getModificationCount());
+		
+		// The preview follows the grid as it changes.
+		grid.addLine(wildcard);
+		items.clear();
+		add(preview, items, yellowCircle);
+		assertValue(grid, items, preview);
+	}
+	
+	private static void add(PlacementPreview preview, List<LineItem> items, LineItem item) {
+		preview.add(item);
+		items.add(item);
+	}
+	
+	private static void remove(PlacementPreview preview, List<LineItem> items, LineItem item) {
+		preview.remove(item.getPosition());
+		items.remove(item);
+	}
+	
+	private static void assertValue(Grid grid, List<LineItem> items, PlacementPreview preview) {
+		int expected = grid.clone().addLine(items);
+		assertTrue(expected > 0);
+		assertTrue(preview.isValid());
+		assertEquals(expected, preview.getValue());
+	}
+	
+}